@@ -5,15 +5,18 @@ import com.example.client.fieldReader.LabWorkFieldReader;
 import com.example.client.iomanager.StandartIOManager;
 import com.example.client.models.*;
 import com.example.client.utils.SHA1;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.*;
-import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 
 /**
  * Основной класс клиентского приложения, реализующий взаимодействие с сервером через TCP-сокеты.
@@ -29,7 +32,12 @@ import java.util.Scanner;
  *
  */
 public class Client {
-    private static User user;
+    private static volatile User user;
+
+    /**
+     * Токен текущей сессии, полученный от сервера при входе.
+     */
+    private static volatile String sessionToken;
 
     /**
      * Хост сервера по умолчанию.
@@ -41,6 +49,14 @@ public class Client {
      */
     private static final int SERVER_PORT = 8088;
 
+    /**
+     * Кодеки, предлагаемые серверу, в порядке предпочтения; {@code json} - без согласования.
+     * По умолчанию берется из переменной окружения "CODECS".
+     */
+    private static final List<String> CODECS = Arrays.stream(System.getenv().getOrDefault("CODECS", "binary,json").split(","))
+            .map(String::trim)
+            .toList();
+
     /**
      * Объект для сериализации/десериализации JSON.
      */
@@ -53,12 +69,11 @@ public class Client {
     public static void main(String[] args) {
         System.out.println("Client starting...");
 
-        try (Socket socket = new Socket(SERVER_HOST, SERVER_PORT);
-             PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        try (ServerConnection connection = new ServerConnection(SERVER_HOST, SERVER_PORT, CODECS);
              Scanner consoleScanner = new Scanner(System.in)) {
 
-            System.out.println("Connected to server at " + SERVER_HOST + ":" + SERVER_PORT);
+            System.out.println("Connected to server at " + SERVER_HOST + ":" + SERVER_PORT
+                    + " (codec: " + connection.codec() + ")");
             System.out.println("Введите команды ('register user pass', 'login user pass')");
 
             String userInput;
@@ -76,23 +91,14 @@ public class Client {
                     continue;
                 }
 
-                Command command = create(userInput, out, in, new ArrayList<>());
+                Command command = create(userInput, connection, new ArrayList<>());
 
                 if (command == null) {
                     continue;
                 }
 
-                out.println(objectMapper.writeValueAsString(command));
-
-                Response response;
-                while (!(response = objectMapper.readValue(in.readLine(), Response.class)).data.equals("EOF")) {
-                    if (userInput.split(" ")[0].equals("exit")) {
-                        System.out.println("Server: " + response.data);
-                        user = null;
-                    } else {
-                        System.out.println("Server: " + response.data);
-                    }
-                }
+                ChunkPrinter printer = new ChunkPrinter();
+                printResponse(send(connection, command, printer), printer);
             }
 
         } catch (UnknownHostException e) {
@@ -106,22 +112,121 @@ public class Client {
         }
     }
 
+    /**
+     * Отправляет команду серверу и отслеживает состояние сессии.
+     * <p>
+     * При успешном {@code login} сохраняет выданный сервером токен сессии, при {@code exit} забывает его.
+     * </p>
+     *
+     * @param connection подключение к серверу
+     * @param command    команда
+     * @return ожидаемый ответ сервера
+     * @throws IOException если отправка не удалась
+     */
+    private static CompletableFuture<Response> send(ServerConnection connection, Command command) throws IOException {
+        return send(connection, command, null);
+    }
+
+    /**
+     * Отправляет команду серверу, передавая части длинного ответа по мере получения.
+     *
+     * @param connection подключение к серверу
+     * @param command    команда
+     * @param chunks     получатель частей ответа или {@code null}, чтобы собрать их в один ответ
+     * @return ожидаемый завершающий ответ сервера
+     * @throws IOException если отправка не удалась
+     */
+    private static CompletableFuture<Response> send(ServerConnection connection, Command command,
+                                                    Consumer<Response> chunks) throws IOException {
+        CompletableFuture<Response> response = connection.send(command, chunks);
+        if ("login".equalsIgnoreCase(command.name)) {
+            String login = command.arguments.get(0).toString();
+            return response.thenApply(r -> {
+                if (r.token != null) {
+                    user = new User(login, null);
+                    sessionToken = r.token;
+                }
+                return r;
+            });
+        }
+        if ("exit".equals(command.name)) {
+            user = null;
+            sessionToken = null;
+        }
+        return response;
+    }
+
+    /**
+     * Дожидается ответа сервера и выводит его.
+     *
+     * @param response ожидаемый ответ
+     * @throws InterruptedException если поток был прерван во время ожидания
+     * @throws IOException если ответ не получен из-за ошибки подключения
+     */
+    private static void printResponse(CompletableFuture<Response> response) throws InterruptedException, IOException {
+        printResponse(response, null);
+    }
+
+    /**
+     * Дожидается завершающего ответа сервера и выводит его после уже выведенных частей.
+     *
+     * @param response ожидаемый ответ
+     * @param printer  получатель, выводивший части ответа, или {@code null}
+     * @throws InterruptedException если поток был прерван во время ожидания
+     * @throws IOException если ответ не получен из-за ошибки подключения
+     */
+    private static void printResponse(CompletableFuture<Response> response, ChunkPrinter printer)
+            throws InterruptedException, IOException {
+        try {
+            Response result = response.get();
+            if (printer == null || !printer.started) {
+                System.out.println("Server: " + result.data);
+            } else if (result.data != null && !result.data.isEmpty()) {
+                System.out.println(result.data);
+            }
+            if (result.nextCursor != null) {
+                System.out.println("Следующая страница: --after " + result.nextCursor);
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Выводит ответы на уже отправленные команды в порядке их отправки и очищает список.
+     * Ошибки отдельных команд выводятся и не прерывают вывод остальных ответов.
+     *
+     * @param inFlight ответы, которые ещё не были выведены
+     */
+    private static void printResponses(List<CompletableFuture<Response>> inFlight) throws InterruptedException {
+        for (CompletableFuture<Response> response : inFlight) {
+            try {
+                printResponse(response);
+            } catch (IOException e) {
+                System.err.println("Ошибка при выполнении команды из скрипта: " + e.getMessage());
+            }
+        }
+        inFlight.clear();
+    }
+
     /**
      * Создаёт объект команды на основе пользовательского ввода.
      * <p>
      * Обрабатывает как простые команды, так и выполнение скриптов из файлов.
+     * Команды скрипта отправляются на сервер подряд, без ожидания ответа на каждую.
      * Предотвращает бесконечную рекурсию при вложенных скриптах.
      * </p>
      *
-     * @param line     строка ввода пользователя
-     * @param out      поток вывода для отправки команд на сервер
-     * @param in       поток ввода для получения ответов от сервера
-     * @param scripts  список уже выполняемых скриптов (для защиты от рекурсии)
+     * @param line       строка ввода пользователя
+     * @param connection подключение к серверу, через которое выполняются команды скрипта
+     * @param scripts    список уже выполняемых скриптов (для защиты от рекурсии)
      * @return созданный объект команды или {@code null}, если команда не распознана или произошла ошибка
      * @throws InterruptedException если поток был прерван
-     * @throws JsonProcessingException если произошла ошибка сериализации
      */
-    static Command create(String line, PrintWriter out, BufferedReader in, List<String> scripts) throws InterruptedException, JsonProcessingException {
+    static Command create(String line, ServerConnection connection, List<String> scripts) throws InterruptedException {
         final String[] tokens = line.split(" ");
         final String commandType = tokens[0];
 
@@ -137,10 +242,12 @@ public class Client {
             if (scripts.contains(scriptName)) {
                 System.err.println("Обнаружена рекурсия! Пропускаем файл: " + scriptName);
 
-                return new UserCommand("echo", List.of("Recursion was found!"), user);
+                return new UserCommand("echo", List.of("Recursion was found!"), sessionToken);
 
             }
 
+            // Команды скрипта отправляются подряд, ответы печатаются в порядке команд
+            List<CompletableFuture<Response>> inFlight = new ArrayList<>();
             try (BufferedReader reader = new BufferedReader(new FileReader(scriptName))) {
                 String input;
                 List<String> newScripts = new ArrayList<>(scripts);
@@ -151,17 +258,17 @@ public class Client {
                     if (input.isEmpty()) continue;
 
                     try {
-                        Command c = create(input, out, in, newScripts);
-                        if (c == null) continue;
+                        if (input.startsWith("execute_script")) {
+                            printResponses(inFlight);
+                        }
 
-                        out.println(objectMapper.writeValueAsString(c));
+                        Command c = create(input, connection, newScripts);
+                        if (c == null) continue;
 
-                        Response response;
-                        while (!(response = objectMapper.readValue(in.readLine(), Response.class)).data.equals("EOF")) {
-                            if ("exit".equals(input.split(" ")[0])) {
-                                user = null;
-                            }
-                            System.out.println("Server: " + response.data);
+                        inFlight.add(send(connection, c));
+                        if ("login".equalsIgnoreCase(c.name)) {
+                            // следующим командам скрипта нужен токен новой сессии
+                            printResponses(inFlight);
                         }
                     } catch (Exception e) {
                         System.err.println("Ошибка при выполнении команды из скрипта: " + e.getMessage());
@@ -172,6 +279,8 @@ public class Client {
                 System.err.println("Файл не найден: " + scriptName);
             } catch (IOException e) {
                 System.err.println("Ошибка чтения файла: " + e.getMessage());
+            } finally {
+                printResponses(inFlight);
             }
 
             return null; // завершающая команда
@@ -186,34 +295,92 @@ public class Client {
             final String pass = SHA1.hash(tokens[2]);
 
             command = new Command(commandType, List.of(login, pass));
-            if (commandType.equalsIgnoreCase("login")) {
-                user = new User(login, pass);
-            }
         } else {
             switch (commandType) {
                 case "add":
                     LabWorkFieldReader labWorkFieldReader1 = new LabWorkFieldReader(new StandartIOManager());
                     LabWork labWork1 = labWorkFieldReader1.executeLabWork();
                     labWork1.setOwnerLogin(user.username);
-                    command = new UserCommand(commandType, List.of(objectMapper.writeValueAsString(labWork1)), user);
+                    command = new UserCommand(commandType, new LabWorkPayload(labWork1), sessionToken);
+                    break;
+                case "add_batch":
+                    if (tokens.length < 2) {
+                        System.out.println("ERROR: Использование: add_batch file_name");
+                        return null;
+                    }
+                    List<LabWork> labWorks;
+                    try {
+                        labWorks = objectMapper.readValue(new File(tokens[1]), new TypeReference<List<LabWork>>() {});
+                    } catch (IOException e) {
+                        System.out.println("ERROR: Не удалось прочитать элементы из файла " + tokens[1] + ": " + e.getMessage());
+                        return null;
+                    }
+                    for (int i = 0; i < labWorks.size(); i++) {
+                        LabWork labWork = labWorks.get(i);
+                        if (labWork == null || !labWork.validate()
+                                || labWork.getDiscipline() != null && !labWork.getDiscipline().validate()) {
+                            System.out.println("ERROR: Некорректный элемент №" + (i + 1) + " в файле " + tokens[1]);
+                            return null;
+                        }
+                        labWork.setOwnerLogin(user.username);
+                    }
+                    command = new UserCommand(commandType, new LabWorkListPayload(labWorks), sessionToken);
                     break;
                 case "update":
+                    int id;
+                    try {
+                        id = Integer.parseInt(tokens[1]);
+                    } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                        System.out.println("ERROR: Использование: update id");
+                        return null;
+                    }
                     LabWorkFieldReader labWorkFieldReader2 = new LabWorkFieldReader(new StandartIOManager());
                     LabWork labWork2 = labWorkFieldReader2.executeLabWork();
                     labWork2.setOwnerLogin(user.username);
-                    command = new UserCommand(commandType, List.of(tokens[1], objectMapper.writeValueAsString(labWork2)), user);
+                    command = new UserCommand(commandType, new UpdatePayload(id, labWork2), sessionToken);
                     break;
                 case "count_less_than_discipline":
                     DisciplineFieldReader disciplineFieldReader = new DisciplineFieldReader(new StandartIOManager());
                     Discipline discipline = disciplineFieldReader.executeDiscipline();
-                    command = new UserCommand(commandType, List.of(objectMapper.writeValueAsString(discipline)), user);
+                    command = new UserCommand(commandType, new DisciplinePayload(discipline), sessionToken);
                     break;
-                case "echo", "remove_lower", "remove_by_id", "filter_by_size":
-                    command = new UserCommand(commandType, List.of(tokens[1]), user);
+                case "count_between_disciplines":
+                    if (tokens.length < 3) {
+                        System.out.println("ERROR: Укажите две дисциплины: count_between_disciplines from to");
+                        return null;
+                    }
+                    command = new UserCommand(commandType, List.of(tokens[1], tokens[2]), sessionToken);
                     break;
-                case "exit", "help", "info", "clear", "head", "show", "remove_first", "print_unique_tuned_in_works",
-                     "print_field_ascending_discipline", "show_owner":
-                    command = new UserCommand(commandType, List.of(), user);
+                case "nearest":
+                    if (tokens.length < 4) {
+                        System.out.println("ERROR: Использование: nearest k x y");
+                        return null;
+                    }
+                    command = new UserCommand(commandType, List.of(tokens[1], tokens[2], tokens[3]), sessionToken);
+                    break;
+                case "filter_by_size":
+                    try {
+                        command = new UserCommand(commandType, List.of(tokens[1]), sessionToken);
+                        command.payload = parsePage(tokens, 2);
+                    } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+                        System.out.println("ERROR: Использование: filter_by_size size [--limit N] [--after курсор]");
+                        return null;
+                    }
+                    break;
+                case "show", "show_owner":
+                    try {
+                        command = new UserCommand(commandType, parsePage(tokens, 1), sessionToken);
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("ERROR: Использование: " + commandType + " [--limit N] [--after курсор]");
+                        return null;
+                    }
+                    break;
+                case "echo", "remove_lower", "remove_by_id":
+                    command = new UserCommand(commandType, List.of(tokens[1]), sessionToken);
+                    break;
+                case "exit", "help", "info", "clear", "head", "remove_first", "print_unique_tuned_in_works",
+                     "print_field_ascending_discipline":
+                    command = new UserCommand(commandType, List.of(), sessionToken);
                     break;
                 default:
                     System.out.println("Unknown command type: " + commandType);
@@ -223,4 +390,51 @@ public class Client {
         }
         return command;
     }
-} 
\ No newline at end of file
+
+    /**
+     * Разбирает параметры постраничного вывода {@code --limit N} и {@code --after курсор}.
+     *
+     * @param tokens слова команды
+     * @param from   индекс первого параметра
+     * @return данные страницы или {@code null}, если параметров нет
+     * @throws IllegalArgumentException если параметры заданы неверно
+     */
+    static PagePayload parsePage(String[] tokens, int from) throws IllegalArgumentException {
+        PagePayload page = null;
+        for (int i = from; i < tokens.length; i++) {
+            if (tokens[i].isEmpty()) {
+                continue;
+            }
+            if (i + 1 >= tokens.length) {
+                throw new IllegalArgumentException("Missing value for " + tokens[i]);
+            }
+            if (page == null) {
+                page = new PagePayload();
+            }
+            switch (tokens[i]) {
+                case "--limit" -> {
+                    page.limit = Integer.parseInt(tokens[++i]);
+                    if (page.limit <= 0) {
+                        throw new IllegalArgumentException("Limit must be positive");
+                    }
+                }
+                case "--after" -> page.after = tokens[++i];
+                default -> throw new IllegalArgumentException("Unknown option: " + tokens[i]);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Выводит части длинного ответа по мере их получения.
+     */
+    private static final class ChunkPrinter implements Consumer<Response> {
+        private volatile boolean started;
+
+        @Override
+        public void accept(Response chunk) {
+            System.out.println(started ? chunk.data : "Server: " + chunk.data);
+            started = true;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.client;
+
+import com.example.client.models.Command;
+import com.example.client.models.Response;
+import com.example.client.protocol.Frame;
+import com.example.client.protocol.FrameType;
+import com.example.client.protocol.JsonCodec;
+import com.example.client.protocol.MessageCodec;
+import com.example.client.protocol.ProtocolException;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Подключение клиента к серверу.
+ * <p>
+ * Команды и ответы передаются кадрами {@link Frame}: заголовок с версией, типом и длиной,
+ * за которым следует {@link Command} или {@link Response} в кодеке подключения ({@link MessageCodec}).
+ * </p>
+ *
+ * <p>Кодек согласуется кадром {@link FrameType#HELLO} сразу после подключения. Если сервер не поддерживает
+ * согласование и закрывает подключение, клиент подключается заново и использует JSON.</p>
+ *
+ * <p>Каждой отправленной команде присваивается {@link Command#requestId}. Ответы читаются отдельным
+ * потоком и сопоставляются с командами по идентификатору, поэтому можно отправить много команд подряд,
+ * не дожидаясь ответа на каждую.</p>
+ *
+ * <p>Длинный ответ сервер может прислать частями ({@link FrameType#RESPONSE_CHUNK}) перед завершающим
+ * {@link FrameType#RESPONSE}. Части передаются получателю, указанному при отправке команды,
+ * а без получателя собираются в завершающий ответ.</p>
+ */
+public class ServerConnection implements Closeable {
+    private final Socket socket;
+    private final MessageCodec codec;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final Map<Long, PendingRequest> pending = new ConcurrentHashMap<>();
+    private final Thread reader;
+    private volatile IOException failure;
+
+    /**
+     * Открывает подключение к серверу с кодеком JSON и запускает поток чтения ответов.
+     *
+     * @param host хост сервера
+     * @param port порт сервера
+     * @throws IOException если не удалось подключиться
+     */
+    public ServerConnection(String host, int port) throws IOException {
+        this(host, port, List.of(JsonCodec.NAME));
+    }
+
+    /**
+     * Открывает подключение к серверу, согласует кодек и запускает поток чтения ответов.
+     *
+     * @param host   хост сервера
+     * @param port   порт сервера
+     * @param codecs имена кодеков в порядке предпочтения
+     * @throws IOException если не удалось подключиться или сервер выбрал неизвестный кодек
+     */
+    public ServerConnection(String host, int port, List<String> codecs) throws IOException {
+        Socket socket = open(host, port);
+        MessageCodec negotiated = MessageCodec.JSON;
+        try {
+            negotiated = hello(socket, codecs);
+        } catch (EOFException e) {
+            socket.close();
+            socket = open(host, port);
+        }
+        this.socket = socket;
+        this.codec = negotiated;
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.reader = new Thread(this::readResponses, "server-connection-reader");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    /**
+     * Отправляет команду серверу, не дожидаясь ответа.
+     *
+     * @param command команда; её {@link Command#requestId} будет перезаписан
+     * @return ответ сервера со всеми его частями, который завершится при его получении
+     * @throws IOException если отправка не удалась или подключение уже разорвано
+     */
+    public CompletableFuture<Response> send(Command command) throws IOException {
+        return send(command, null);
+    }
+
+    /**
+     * Отправляет команду серверу, не дожидаясь ответа, и передаёт части ответа по мере получения.
+     *
+     * @param command команда; её {@link Command#requestId} будет перезаписан
+     * @param chunks  получатель частей ответа, вызывается потоком чтения ответов;
+     *                {@code null} - части собираются в завершающий ответ
+     * @return завершающий ответ сервера без уже переданных частей
+     * @throws IOException если отправка не удалась или подключение уже разорвано
+     */
+    public CompletableFuture<Response> send(Command command, Consumer<Response> chunks) throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        command.requestId = nextRequestId.incrementAndGet();
+        PendingRequest request = new PendingRequest(chunks);
+        pending.put(command.requestId, request);
+        // поток чтения мог завершиться и завершить ожидающие команды до добавления этой
+        IOException failed = failure;
+        if (failed != null && pending.remove(command.requestId) != null) {
+            throw failed;
+        }
+
+        byte[] payload;
+        try {
+            payload = codec.encodeCommand(command);
+        } catch (IOException | RuntimeException e) {
+            pending.remove(command.requestId);
+            throw e;
+        }
+        try {
+            synchronized (out) {
+                new Frame(FrameType.REQUEST, payload).write(out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            pending.remove(command.requestId);
+            throw e;
+        }
+        return request.future;
+    }
+
+    /**
+     * Читает ответы сервера и завершает ожидающие их команды.
+     * <p>
+     * Если ответ не удалось прочитать или обработать, в том числе из-за исключения получателя частей,
+     * подключение закрывается, а все ожидающие команды завершаются с ошибкой.
+     * </p>
+     */
+    private void readResponses() {
+        IOException error;
+        try {
+            Frame frame;
+            while ((frame = Frame.read(in)) != null) {
+                if (frame.getType() == FrameType.RESPONSE_CHUNK) {
+                    Response chunk = codec.decodeResponse(frame.getPayload());
+                    PendingRequest request = pending.get(chunk.requestId);
+                    if (request != null) {
+                        request.chunk(chunk);
+                    }
+                    continue;
+                }
+                if (frame.getType() != FrameType.RESPONSE) {
+                    throw new ProtocolException("Unexpected frame type: " + frame.getType());
+                }
+                Response response = codec.decodeResponse(frame.getPayload());
+                PendingRequest request = pending.remove(response.requestId);
+                if (request != null) {
+                    request.complete(response);
+                }
+            }
+            error = new EOFException("Server closed the connection");
+        } catch (IOException e) {
+            error = e;
+        } catch (RuntimeException e) {
+            error = new IOException("Failed to process server response: " + e.getMessage(), e);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // подключение уже непригодно
+            }
+        }
+
+        failure = error;
+        for (Long requestId : pending.keySet()) {
+            PendingRequest request = pending.remove(requestId);
+            if (request != null) {
+                request.future.completeExceptionally(error);
+            }
+        }
+    }
+
+    /**
+     * Возвращает имя кодека подключения.
+     */
+    public String codec() {
+        return codec.name();
+    }
+
+    private static Socket open(String host, int port) throws IOException {
+        Socket socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        return socket;
+    }
+
+    /**
+     * Предлагает серверу кодеки и читает его выбор. Ответ читается без буферизации,
+     * чтобы не забрать из сокета байты, предназначенные потоку чтения ответов.
+     *
+     * @throws EOFException если сервер закрыл подключение, не поддерживая согласование
+     */
+    private static MessageCodec hello(Socket socket, List<String> codecs) throws IOException {
+        byte[] offer = String.join(",", codecs).getBytes(StandardCharsets.UTF_8);
+        socket.getOutputStream().write(new Frame(FrameType.HELLO, offer).encode());
+        socket.getOutputStream().flush();
+        Frame reply = Frame.read(new DataInputStream(socket.getInputStream()));
+        if (reply == null) {
+            throw new EOFException("Server closed the connection during codec negotiation");
+        }
+        if (reply.getType() != FrameType.HELLO) {
+            throw new ProtocolException("Unexpected frame type: " + reply.getType());
+        }
+        return MessageCodec.forName(new String(reply.getPayload(), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /**
+     * Команда, ожидающая ответа, и уже полученные части ответа.
+     */
+    private static final class PendingRequest {
+        private final CompletableFuture<Response> future = new CompletableFuture<>();
+        private final Consumer<Response> chunks;
+        private StringBuilder collected;
+
+        private PendingRequest(Consumer<Response> chunks) {
+            this.chunks = chunks;
+        }
+
+        private void chunk(Response chunk) {
+            if (chunks != null) {
+                chunks.accept(chunk);
+                return;
+            }
+            if (collected == null) {
+                collected = new StringBuilder();
+            } else {
+                collected.append('\n');
+            }
+            collected.append(chunk.data);
+        }
+
+        private void complete(Response response) {
+            if (collected != null) {
+                if (response.data != null && !response.data.isEmpty()) {
+                    collected.append('\n').append(response.data);
+                }
+                response.data = collected.toString();
+            }
+            future.complete(response);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.client.models;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 
@@ -19,8 +20,25 @@ import java.util.List;
 })
 public class Command {
     public String name;
+
+    /**
+     * Простые аргументы команды: строки и числа.
+     */
     public List<Object> arguments;
 
+    /**
+     * Элементы и дисциплины, передаваемые командой, или {@code null}, если команде они не нужны.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Payload payload;
+
+    /**
+     * Идентификатор запроса, назначаемый клиентом.
+     * <p>Сервер возвращает его в {@link Response#requestId}, что позволяет отправлять
+     * несколько команд подряд, не дожидаясь ответов.</p>
+     */
+    public long requestId;
+
     public Command() {
     }
 
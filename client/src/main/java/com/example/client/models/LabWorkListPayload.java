@@ -0,0 +1,17 @@
+package com.example.client.models;
+
+import java.util.List;
+
+/**
+ * Данные команды {@code add_batch}: добавляемые элементы.
+ */
+public class LabWorkListPayload extends Payload {
+    public List<LabWork> labWorks;
+
+    public LabWorkListPayload() {
+    }
+
+    public LabWorkListPayload(List<LabWork> labWorks) {
+        this.labWorks = labWorks;
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.client.models;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 /**
  * Класс, представляющий ответ от сервера.
  * <p>
@@ -14,6 +16,24 @@ public class Response {
      */
     public String data;
 
+    /**
+     * Идентификатор запроса, на который дан ответ (см. {@link Command#requestId}).
+     */
+    public long requestId;
+
+    /**
+     * Токен сессии, выдаваемый сервером в ответ на успешный {@code login}.
+     * <p>В остальных ответах равен {@code null}.</p>
+     */
+    public String token;
+
+    /**
+     * Курсор следующей страницы для постраничного чтения (см. {@link PagePayload#after}).
+     * <p>Равен {@code null}, если страница последняя или команда выполнялась без {@link PagePayload}.</p>
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String nextCursor;
+
     /**
      * Конструктор по умолчанию, необходимый для сериализации/десериализации.
      */
@@ -5,17 +5,16 @@ import java.util.List;
 /**
  * Класс, представляющий команду, связанную с пользователем.
  * <p>
- * Расширяет базовый класс {@link Command} и добавляет к нему информацию о пользователе,
- * которая может использоваться при выполнении команды (например, аутентификация,
- * выполнение действий от имени пользователя и т.д.).
+ * Расширяет базовый класс {@link Command} и добавляет к нему токен сессии, полученный при входе.
+ * По токену сервер определяет пользователя, от имени которого выполняется команда,
+ * поэтому логин и хэш пароля с каждой командой не передаются.
  * </p>
  */
 public class UserCommand extends Command {
     /**
-     * Объект пользователя, связанный с данной командой.
-     * <p>Может содержать данные для аутентификации или контекста выполнения команды.</p>
+     * Токен сессии, выданный сервером в ответ на {@code login}.
      */
-    public User user;
+    public String token;
 
     /**
      * Конструктор по умолчанию, необходимый для сериализации/десериализации.
@@ -29,10 +28,22 @@ public class UserCommand extends Command {
      *
      * @param name       имя команды, не должно быть null
      * @param arguments  список аргументов команды, может быть пустым или null
-     * @param user       объект пользователя, связанный с командой, может быть null
+     * @param token      токен сессии пользователя, может быть null (если вход не выполнен)
      */
-    public UserCommand(String name, List<Object> arguments, User user) {
+    public UserCommand(String name, List<Object> arguments, String token) {
         super(name, arguments);
-        this.user = user;
+        this.token = token;
+    }
+
+    /**
+     * Конструктор для команды, передающей элементы или дисциплину.
+     *
+     * @param name    имя команды, не должно быть null
+     * @param payload данные команды
+     * @param token   токен сессии пользователя, может быть null (если вход не выполнен)
+     */
+    public UserCommand(String name, Payload payload, String token) {
+        this(name, List.of(), token);
+        this.payload = payload;
     }
 }
\ No newline at end of file
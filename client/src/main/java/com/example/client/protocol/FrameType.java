@@ -0,0 +1,60 @@
+package com.example.client.protocol;
+
+/**
+ * Тип кадра протокола обмена между клиентом и сервером.
+ *
+ * @see Frame
+ */
+public enum FrameType {
+    /**
+     * Команда клиента ({@link com.example.client.models.Command} в кодеке подключения).
+     */
+    REQUEST((byte) 1),
+
+    /**
+     * Ответ сервера ({@link com.example.client.models.Response} в кодеке подключения).
+     */
+    RESPONSE((byte) 2),
+
+    /**
+     * Согласование кодека ({@link MessageCodec}): клиент перечисляет имена поддерживаемых кодеков
+     * через запятую в порядке предпочтения, сервер отвечает именем выбранного. Имена передаются в UTF-8.
+     */
+    HELLO((byte) 3),
+
+    /**
+     * Часть длинного ответа сервера с тем же {@code requestId}, что и завершающий его {@link #RESPONSE}.
+     * Данные частей и завершающего ответа - последовательные строки одного результата. Части отправляются
+     * только клиентам, приславшим {@link #HELLO}.
+     */
+    RESPONSE_CHUNK((byte) 4);
+
+    private final byte code;
+
+    FrameType(byte code) {
+        this.code = code;
+    }
+
+    /**
+     * Возвращает код типа, записываемый в заголовок кадра.
+     */
+    public byte code() {
+        return code;
+    }
+
+    /**
+     * Находит тип кадра по коду из заголовка.
+     *
+     * @param code код типа
+     * @return тип кадра
+     * @throws ProtocolException если код неизвестен
+     */
+    public static FrameType fromCode(byte code) throws ProtocolException {
+        for (FrameType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        throw new ProtocolException("Unknown frame type: " + code);
+    }
+}
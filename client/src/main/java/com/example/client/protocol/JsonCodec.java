@@ -0,0 +1,31 @@
+package com.example.client.protocol;
+
+import com.example.client.models.Command;
+import com.example.client.models.Response;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+
+/**
+ * Кодек JSON: команды и ответы сериализуются Jackson в UTF-8.
+ */
+public class JsonCodec implements MessageCodec {
+    public static final String NAME = "json";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encodeCommand(Command command) throws IOException {
+        return objectMapper.writeValueAsBytes(command);
+    }
+
+    @Override
+    public Response decodeResponse(byte[] payload) throws IOException {
+        return objectMapper.readValue(payload, Response.class);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.client.protocol;
+
+import com.example.client.models.Command;
+import com.example.client.models.Response;
+
+import java.io.IOException;
+
+/**
+ * Представление команд и ответов в полезной нагрузке кадров.
+ * <p>
+ * Кодек выбирается для каждого подключения кадрами {@link FrameType#HELLO}: клиент перечисляет
+ * поддерживаемые кодеки в порядке предпочтения, сервер отвечает именем выбранного.
+ * Подключение без согласования использует {@link #JSON}.
+ * </p>
+ *
+ * @see JsonCodec
+ * @see BinaryCodec
+ */
+public interface MessageCodec {
+    /**
+     * Кодек по умолчанию, понятный любой версии клиента и сервера.
+     */
+    MessageCodec JSON = new JsonCodec();
+
+    /**
+     * Компактный двоичный кодек.
+     */
+    MessageCodec BINARY = new BinaryCodec();
+
+    /**
+     * Возвращает имя кодека, передаваемое в {@link FrameType#HELLO}.
+     */
+    String name();
+
+    byte[] encodeCommand(Command command) throws IOException;
+
+    Response decodeResponse(byte[] payload) throws IOException;
+
+    /**
+     * Находит кодек по имени.
+     *
+     * @param name имя кодека
+     * @return кодек
+     * @throws ProtocolException если кодек неизвестен
+     */
+    static MessageCodec forName(String name) throws ProtocolException {
+        for (MessageCodec codec : new MessageCodec[]{JSON, BINARY}) {
+            if (codec.name().equals(name)) {
+                return codec;
+            }
+        }
+        throw new ProtocolException("Unknown codec: " + name);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.client.protocol;
+
+import java.io.IOException;
+
+/**
+ * Исключение, сигнализирующее о нарушении формата кадров протокола.
+ */
+public class ProtocolException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public ProtocolException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.server;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Блокирующий TCP-сервер: каждое подключение обслуживается {@link ClientHandler#run()}
+ * в отдельной задаче переданного {@link ExecutorService}.
+ * <p>
+ * С фиксированным пулом число одновременно обслуживаемых клиентов ограничено размером пула,
+ * с исполнителем {@code newVirtualThreadPerTaskExecutor()} каждое подключение получает
+ * собственный виртуальный поток.
+ * </p>
+ */
+public class BlockingServer implements ServerTransport {
+    private final int port;
+    private final ExecutorService executorService;
+    private volatile ServerSocket serverSocket;
+    private volatile boolean running = true;
+
+    /**
+     * @param port            порт для прослушивания
+     * @param executorService исполнитель, в котором запускаются обработчики подключений
+     */
+    public BlockingServer(int port, ExecutorService executorService) {
+        this.port = port;
+        this.executorService = executorService;
+    }
+
+    @Override
+    public void run() {
+        try (ServerSocket socket = new ServerSocket(port)) {
+            serverSocket = socket;
+            System.out.println("Server started. Waiting for clients...");
+            while (running) {
+                Socket clientSocket = socket.accept();
+                System.out.println("Client connected: " + clientSocket.getInetAddress());
+                executorService.submit(new ClientHandler(clientSocket));
+            }
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Server exception: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            ServerSocket socket = serverSocket;
+            if (socket != null) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing server socket: " + e.getMessage());
+        }
+        executorService.shutdownNow();
+    }
+}
@@ -1,25 +1,31 @@
 package com.example.server;
 
 import com.example.server.models.*;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.server.protocol.Frame;
+import com.example.server.protocol.FrameType;
+import com.example.server.protocol.MessageCodec;
+import com.example.server.protocol.ProtocolException;
 
 import java.io.*;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.time.ZonedDateTime;
-import java.util.Comparator;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
-import static java.lang.Math.pow;
-
 /**
  * Обработчик клиентского подключения.
  * <p>
  * Этот класс реализует {@link Runnable} и предназначен для обслуживания одного клиента через TCP-сокет.
  *
- * <p>Каждое соединение обрабатывается в отдельном потоке.</p>
+ * <p>Каждое соединение обрабатывается в отдельном потоке. При работе через {@link NioServer}
+ * обработчик не владеет сокетом и вызывается через {@link #processFrame(Frame)}.</p>
  *
  * @see ClientHandler#run() — точка входа для потока
  * @see Command — базовый класс команд
@@ -27,15 +33,55 @@ import static java.lang.Math.pow;
  */
 public class ClientHandler implements Runnable {
     private final Socket clientSocket;
-    private PrintWriter out;
-    private BufferedReader in;
+    private DataOutputStream out;
+    private DataInputStream in;
+
+    /**
+     * Кодек подключения, выбранный кадром {@link FrameType#HELLO}.
+     */
+    private volatile MessageCodec codec = MessageCodec.JSON;
+
+    /**
+     * Принимает ли клиент ответы частями ({@link FrameType#RESPONSE_CHUNK}): такие клиенты присылают {@link FrameType#HELLO}.
+     */
+    private volatile boolean chunked = false;
 
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    /**
+     * Получатель кадров, отправляемых клиенту.
+     */
+    @FunctionalInterface
+    interface FrameSink {
+        void send(Frame frame) throws IOException;
+    }
+
+    /**
+     * Команды, которые не обращаются к коллекции и выполняются во время её загрузки.
+     */
+    private static final Set<String> COLLECTION_FREE_COMMANDS = Set.of("echo", "help", "exit");
+
+    /**
+     * Команды, которым нужна вся коллекция, а не только элементы пользователя.
+     */
+    private static final Set<String> WHOLE_COLLECTION_COMMANDS = Set.of("show_owner", "filter_by_size", "nearest",
+            "count_less_than_discipline", "count_between_disciplines");
+
+    /**
+     * Наибольшее число элементов, просматриваемых для одной страницы отфильтрованного вывода.
+     */
+    static final int MAX_PAGE_SCAN = 10_000;
 
     public ClientHandler(Socket socket) {
         this.clientSocket = socket;
     }
 
+    /**
+     * Создаёт обработчик без собственного сокета.
+     * <p>Используется {@link NioServer}, который сам читает и пишет данные подключения.</p>
+     */
+    ClientHandler() {
+        this(null);
+    }
+
     /**
      * Проверяет учетные данные пользователя.
      * <p>
@@ -50,13 +96,33 @@ public class ClientHandler implements Runnable {
         return ServiceLocator.userDataBaseService.validateCredentials(user.username, user.pass);
     }
 
+    /**
+     * Определяет пользователя, от имени которого выполняется команда.
+     * <p>
+     * Если в команде передан токен сессии, пользователь находится по таблице сессий без обращения к БД.
+     * Иначе проверяются логин и хэш пароля из {@link UserCommand#user}.
+     * </p>
+     *
+     * @param command команда пользователя
+     * @return логин пользователя или {@code null}, если пользователь не авторизован
+     */
+    private String authenticate(UserCommand command) {
+        if (command.token != null) {
+            return ServiceLocator.sessionManager.resolve(command.token);
+        }
+        if (command.user != null && validateCredentials(command.user)) {
+            return command.user.username;
+        }
+        return null;
+    }
+
     /**
      * Основной метод, управляющий взаимодействием с клиентом.
      * <p>
      * Запускается при старте потока и обслуживает одного клиента через сокет:
      * <ul>
-     *     <li>Чтение команд от клиента</li>
-     *     <li>Десериализация JSON в объект {@link Command}</li>
+     *     <li>Чтение кадров {@link Frame} с командами от клиента</li>
+     *     <li>Декодирование объекта {@link Command} кодеком подключения</li>
      *     <li>Обработка команды</li>
      *     <li>Отправка ответа клиенту</li>
      * </ul>
@@ -67,16 +133,16 @@ public class ClientHandler implements Runnable {
     @Override
     public void run() {
         try {
-            out = new PrintWriter(clientSocket.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                System.out.println("Received from client (" + clientSocket.getInetAddress() + "): " + inputLine);
-                Command command = objectMapper.readValue(inputLine, Command.class);
-                Response response = processCommand(command);
-                out.println(objectMapper.writeValueAsString(response));
-                out.println("{\"data\": \"EOF\"}");
+            out = new DataOutputStream(new BufferedOutputStream(clientSocket.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(clientSocket.getInputStream()));
+
+            Frame frame;
+            while ((frame = Frame.read(in)) != null) {
+                System.out.println("Received from client (" + clientSocket.getInetAddress() + "): " + describe(frame));
+                processFrame(frame, response -> {
+                    response.write(out);
+                    out.flush();
+                });
             }
         } catch (IOException e) {
             System.err.println("IOException for " + clientSocket.getInetAddress() + ": " + e.getMessage());
@@ -92,23 +158,71 @@ public class ClientHandler implements Runnable {
         }
     }
 
+    /**
+     * Выполняет один кадр-запрос и отправляет кадры ответа.
+     * <p>Ответ помечается идентификатором запроса, чтобы клиент мог сопоставить его с командой.
+     * Длинный ответ может предваряться частями {@link FrameType#RESPONSE_CHUNK} с тем же идентификатором.</p>
+     *
+     * <p>На кадр {@link FrameType#HELLO} выбирается кодек подключения из предложенных клиентом
+     * и разрешённых в {@link ServiceLocator#codecs}, следующие запросы и ответы кодируются им.</p>
+     *
+     * @param frame кадр типа {@link FrameType#REQUEST} с {@link Command} или {@link FrameType#HELLO}
+     * @param sink  получатель кадров ответа
+     * @throws IOException если кадр не является запросом, его не удалось разобрать или ответ не отправлен
+     */
+    void processFrame(Frame frame, FrameSink sink) throws IOException {
+        if (frame.getType() == FrameType.HELLO) {
+            codec = MessageCodec.choose(new String(frame.getPayload(), StandardCharsets.UTF_8), ServiceLocator.codecs);
+            chunked = true;
+            sink.send(new Frame(FrameType.HELLO, codec.name().getBytes(StandardCharsets.UTF_8)));
+            return;
+        }
+        if (frame.getType() != FrameType.REQUEST) {
+            throw new ProtocolException("Unexpected frame type: " + frame.getType());
+        }
+        MessageCodec codec = this.codec;
+        Command command = codec.decodeCommand(frame.getPayload());
+        ResponseStream stream = new ResponseStream(!chunked ? null : chunk -> {
+            chunk.requestId = command.requestId;
+            sink.send(new Frame(FrameType.RESPONSE_CHUNK, codec.encodeResponse(chunk)));
+        }, ServiceLocator.responseChunkChars);
+        Response response = processCommand(command, stream);
+        response.requestId = command.requestId;
+        sink.send(new Frame(FrameType.RESPONSE, codec.encodeResponse(response)));
+    }
+
+    /**
+     * Возвращает содержимое кадра для журнала: текст в кодеке JSON, размер в двоичных кодеках.
+     */
+    String describe(Frame frame) {
+        if (frame.getType() == FrameType.HELLO) {
+            return "HELLO " + new String(frame.getPayload(), StandardCharsets.UTF_8);
+        }
+        return codec.describe(frame.getPayload());
+    }
+
     /**
      * Обрабатывает полученную команду и возвращает соответствующий ответ.
      * <p>
-     * Если команда является экземпляром {@link UserCommand}, проверяет аутентификацию пользователя.
+     * Если команда является экземпляром {@link UserCommand}, проверяет аутентификацию пользователя
+     * по токену сессии (или, если токена нет, по логину и паролю).
      * В зависимости от типа команды вызывает соответствующий обработчик.
      * </p>
      *
      * @param command полученная команда от клиента
+     * @param stream  ответ, отправляемый частями, для команд с длинным результатом
      * @return объект {@link Response} с результатом выполнения команды
      */
-    private Response processCommand(Command command) {
+    private Response processCommand(Command command, ResponseStream stream) {
         String help_text = "Справка по командам:\n" +
                 " add                  - add {element}: добавить новый элемент в коллекцию\n" +
+                " add_batch            - add_batch file_name : добавить в коллекцию элементы из JSON-файла\n" +
                 " clear                - clear: очистить коллекцию\n" +
                 " count_less_than_discipline - count_less_than_discipline {discipline}: подсчёт количества элементов, у которых дисциплина меньше заданной\n" +
-                " filter_by_size       - filter_by_size {size}: вывести элементы, размер которых меньше заданного\n" +
+                " count_between_disciplines - count_between_disciplines from to : подсчёт количества элементов, у которых название дисциплины между from и to включительно\n" +
+                " filter_by_size       - filter_by_size {size} [--limit N] [--after курсор]: вывести элементы, размер которых меньше заданного\n" +
                 " head                 - head : вывести первый элемент коллекции\n" +
+                " nearest              - nearest k x y : вывести k элементов, ближайших к точке (x, y)\n" +
                 " help                 - help : вывести справку по доступным командам\n" +
                 " info                 - info : вывести информацию о коллекции\n" +
                 " print_field_ascending_discipline - print_field_ascending_discipline : вывести все дисциплины из коллекции в порядке возрастания\n" +
@@ -116,21 +230,30 @@ public class ClientHandler implements Runnable {
                 " remove_by_id         - remove_by_id id : удалить элемент из коллекции по его ID\n" +
                 " remove_first         - remove_first : удалить первый элемент из коллекции\n" +
                 " remove_lower         - remove_lower id : удалить все элементы с ID меньше указанного\n" +
-                " show                 - show : вывести все элементы коллекции\n" +
+                " show                 - show [--limit N] [--after курсор] : вывести все элементы коллекции\n" +
+                " show_owner           - show_owner [--limit N] [--after курсор] : вывести элементы всех пользователей\n" +
                 " update               - update id {element} : обновить значение элемента коллекции, id которого равен заданному\n";
 
         if (command instanceof UserCommand userCommand) {
-            boolean authenticated = validateCredentials(userCommand.user);
-            if (!authenticated) {
+            String username = authenticate(userCommand);
+            if (username == null) {
                 return new Response("ERROR: Not logged in. Please login first.");
             }
+            userCommand.user = new User(username, null);
+            Response notLoaded = checkLoaded(userCommand);
+            if (notLoaded != null) {
+                return notLoaded;
+            }
             return switch (userCommand.name) {
                 case "echo" -> new Response(userCommand.arguments.get(0).toString());
                 case "add" -> handleAdd(userCommand);
+                case "add_batch" -> handleAddBatch(userCommand);
                 case "clear" -> handleClear(userCommand);
                 case "count_less_than_discipline" -> handleCountLessThanDiscipline(userCommand);
-                case "filter_by_size" -> handleFilterBySize(userCommand);
+                case "count_between_disciplines" -> handleCountBetweenDisciplines(userCommand);
+                case "filter_by_size" -> handleFilterBySize(userCommand, stream);
                 case "head" -> handleHead(userCommand);
+                case "nearest" -> handleNearest(userCommand);
                 case "help" -> new Response(help_text);
                 case "info" -> handleInfo(userCommand);
                 case "print_field_ascending_discipline" -> handlePrintFieldAscendingDiscipline(userCommand);
@@ -138,10 +261,10 @@ public class ClientHandler implements Runnable {
                 case "remove_by_id" -> handleRemoveById(userCommand);
                 case "remove_first" -> handleRemoveFirst(userCommand);
                 case "remove_lower" -> handleRemoveLower(userCommand);
-                case "show" -> handleShow(userCommand);
+                case "show" -> handleShow(userCommand, stream);
                 case "update" -> handleUpdateId(userCommand);
-                case "exit" -> new Response("INFO: Exiting");
-                case "show_owner" -> handleShowOwner();
+                case "exit" -> handleExit(userCommand);
+                case "show_owner" -> handleShowOwner(userCommand, stream);
                 default -> new Response("ERROR: Unknown command: " + command);
             };
         } else {
@@ -154,6 +277,30 @@ public class ClientHandler implements Runnable {
         }
     }
 
+    /**
+     * Проверяет, загружена ли часть коллекции, нужная команде.
+     * <p>
+     * Пока коллекция загружается, команды с элементами пользователя выполняются, как только загружены
+     * его элементы, а команды по всей коллекции - после полной загрузки.
+     * </p>
+     *
+     * @param command команда авторизованного пользователя
+     * @return ответ с ошибкой или {@code null}, если команду можно выполнять
+     */
+    private Response checkLoaded(UserCommand command) {
+        CollectionLoader loader = ServiceLocator.collectionLoader;
+        if (COLLECTION_FREE_COMMANDS.contains(command.name) || loader.isComplete()) {
+            return null;
+        }
+        if (loader.isFailed()) {
+            return new Response("ERROR: Коллекция не загружена из БД.");
+        }
+        boolean ready = WHOLE_COLLECTION_COMMANDS.contains(command.name)
+                ? loader.isComplete()
+                : loader.isReady(command.user.username);
+        return ready ? null : new Response("ERROR: Коллекция ещё загружается, повторите команду позже.");
+    }
+
     /**
      * Регистрирует нового пользователя в системе.
      * <p>
@@ -183,6 +330,7 @@ public class ClientHandler implements Runnable {
      * Выполняет вход пользователя в систему.
      * <p>
      * Проверяет учетные данные и возвращает результат аутентификации.
+     * При успешном входе открывает сессию и возвращает её токен в {@link Response#token}.
      * </p>
      *
      * @param username имя пользователя
@@ -195,13 +343,26 @@ public class ClientHandler implements Runnable {
         }
         if (ServiceLocator.userDataBaseService.validateCredentials(username, password)) {
             System.out.println("User logged in: " + username);
-            return new Response("SUCCESS: Logged in as " + username + ".");
+            Response response = new Response("SUCCESS: Logged in as " + username + ".");
+            response.token = ServiceLocator.sessionManager.open(username);
+            return response;
         } else {
             System.err.println("Login attempt failed: Invalid password. User: " + username);
             return new Response("ERROR: Invalid password.");
         }
     }
 
+    /**
+     * Завершает сеанс пользователя, отзывая токен сессии, с которым пришла команда.
+     *
+     * @param command команда выхода
+     * @return ответ о завершении сеанса
+     */
+    private Response handleExit(UserCommand command) {
+        ServiceLocator.sessionManager.revoke(command.token);
+        return new Response("INFO: Exiting");
+    }
+
     /**
      * Возвращает информацию о текущем состоянии коллекции.
      * <p>
@@ -213,7 +374,7 @@ public class ClientHandler implements Runnable {
     private Response handleInfo(UserCommand command) {
         String type = ServiceLocator.collectionSyncManager.getCollectionType();
         ZonedDateTime creationDate = ServiceLocator.collectionSyncManager.getCreationDate();
-        int size = ServiceLocator.collectionSyncManager.getAllByOwner(command.user.username).size();
+        int size = ServiceLocator.collectionSyncManager.sizeByOwner(command.user.username);
 
         return new Response("Тип коллекции: " + type + "\nДата инициализации: " + creationDate +
                 "\nЧисло элементов: " + size);
@@ -227,9 +388,7 @@ public class ClientHandler implements Runnable {
      */
     private Response handleClear(UserCommand command) {
         try {
-            ServiceLocator.collectionDataBaseService.clearCollection(command.user.username);
-
-            ServiceLocator.collectionSyncManager.clear(command.user.username);
+            ServiceLocator.collectionWriter.clear(command.user.username);
 
             return new Response("Коллекция очищена");
         } catch (Exception e) {
@@ -243,72 +402,119 @@ public class ClientHandler implements Runnable {
      * @return ответ с результатом операции
      */
     private Response handleHead(UserCommand command) {
-        List<LabWork> list = ServiceLocator.collectionSyncManager.getAllByOwner(command.user.username);
+        LabWork first = ServiceLocator.collectionSyncManager.getFirstByOwner(command.user.username);
 
-        if (list.isEmpty()) {
+        if (first == null) {
             return new Response("Empty");
         }
 
-        return new Response(list.get(0).toString());
+        return new Response(first.toString());
     }
 
     /**
      * Возвращает всю коллекцию пользователя.
+     * <p>Элементы выводятся из снимка коллекции в порядке ID и отправляются частями по мере набора.</p>
+     *
+     * <p>С {@link PagePayload} возвращается одна страница, см. {@link #showPage(PagePayload, IntFunction, Predicate, ResponseStream)}.</p>
+     *
+     * @param stream ответ, отправляемый частями
      * @return ответ с информацией о коллекции
      */
-    private Response handleShow(UserCommand command) {
-
-        try {
-            List<LabWork> labWorks = ServiceLocator.collectionSyncManager.getAllByOwner(command.user.username).stream()
-                    .distinct()
-                    .sorted()
-                    .toList();
-
-            if (labWorks.isEmpty()) {
-                return new Response("Empty");
-            }
-
-            String responseText = labWorks.stream()
-                    .map(LabWork::toString)
-                    .collect(Collectors.joining("\n"));
-
-            return new Response(responseText);
-        } catch (Exception e) {
-            return new Response("ERROR: " + e.getMessage());
+    private Response handleShow(UserCommand command, ResponseStream stream) {
+        String owner = command.user.username;
+        if (command.payload instanceof PagePayload page) {
+            return showPage(page, afterId -> ServiceLocator.collectionSyncManager.getAllByOwnerAfter(owner, afterId),
+                    labWork -> true, stream);
         }
+        return show(ServiceLocator.collectionSyncManager.getAllByOwner(owner), stream);
     }
 
     /**
-     * Возвращает все элементы коллекции, принадлежащие текущему пользователю.
+     * Возвращает все элементы коллекции.
      * <p>
-     * Метод извлекает данные из {@link CollectionSyncManager}, фильтрует их по владельцу,
-     * убирает дубликаты, сортирует и формирует текстовый ответ со списком элементов.
+     * Элементы выводятся из снимка коллекции в порядке ID, по одному на строку,
+     * и отправляются частями по мере набора.
      * </p>
      *
-     * <p>Если коллекция пользователя пуста, возвращается сообщение "Empty".</p>
+     * <p>Если коллекция пуста, возвращается сообщение "Empty".
+     * С {@link PagePayload} возвращается одна страница, см. {@link #showPage(PagePayload, IntFunction, Predicate, ResponseStream)}.</p>
+     *
+     * @param command команда пользователя
+     * @param stream  ответ, отправляемый частями
      * @return объект {@link Response}, содержащий:
      *         <ul>
-     *             <li>список всех элементов пользователя, разделённых переводом строки</li>
+     *             <li>элементы, не отправленные частями, разделённые переводом строки</li>
      *             <li>сообщение "Empty", если элементов нет</li>
      *             <li>ошибку, если произошло исключение</li>
      *         </ul>
      */
-    private Response handleShowOwner() {
-        try {
-            List<LabWork> labWorks = ServiceLocator.collectionSyncManager.getAll().stream()
-                    .distinct()
-                    .sorted()
-                    .toList();
+    private Response handleShowOwner(UserCommand command, ResponseStream stream) {
+        if (command.payload instanceof PagePayload page) {
+            return showPage(page, ServiceLocator.collectionSyncManager::getAllAfter, labWork -> true, stream);
+        }
+        return show(ServiceLocator.collectionSyncManager.getAll(), stream);
+    }
 
+    /**
+     * Выводит элементы по одному на строку.
+     *
+     * @param labWorks элементы снимка коллекции в порядке ID
+     * @param stream   ответ, отправляемый частями
+     */
+    private Response show(Collection<LabWork> labWorks, ResponseStream stream) {
+        try {
             if (labWorks.isEmpty()) {
                 return new Response("Empty");
             }
+            for (LabWork labWork : labWorks) {
+                stream.append(labWork.toString());
+            }
+            return stream.finish();
+        } catch (Exception e) {
+            return new Response("ERROR: " + e.getMessage());
+        }
+    }
 
-            String responseText = labWorks.stream()
-                    .map(LabWork::toString)
-                    .collect(Collectors.joining("\n"));
-
-            return new Response(responseText);
+    /**
+     * Выводит одну страницу элементов по одному на строку.
+     * <p>
+     * Страница - первые {@link PagePayload#limit} элементов представления, подходящих под {@code filter},
+     * начиная после элемента из курсора {@link PagePayload#after}. Начало страницы находится по индексу ID
+     * за O(log n). Без фильтра страница стоит O(limit) независимо от её места в коллекции. С фильтром
+     * элементы представления проверяются по порядку, поэтому для одной страницы просматривается
+     * не больше {@link #MAX_PAGE_SCAN} элементов (или {@code limit}, если он больше): тогда страница
+     * может оказаться неполной или пустой, а курсор указывает на последний просмотренный элемент.
+     * Если за страницей есть ещё элементы, ответ содержит курсор следующей страницы
+     * в {@link Response#nextCursor}.
+     * </p>
+     *
+     * @param page   размер страницы и курсор
+     * @param view   элементы снимка коллекции с ID больше заданного в порядке ID
+     * @param filter условие, которому должны удовлетворять выводимые элементы
+     * @param stream ответ, отправляемый частями
+     */
+    private Response showPage(PagePayload page, IntFunction<Iterable<LabWork>> view, Predicate<LabWork> filter,
+                              ResponseStream stream) {
+        try {
+            // ID элементов положительны, поэтому первая страница начинается после 0
+            int afterId = page.after == null ? 0 : PageCursor.decode(page.after);
+            int limit = page.limit > 0 ? page.limit : Integer.MAX_VALUE;
+            int maxScanned = Math.max(limit, MAX_PAGE_SCAN);
+            Iterator<LabWork> labWorks = view.apply(afterId).iterator();
+            LabWork examined = null;
+            int count = 0;
+            for (int scanned = 0; count < limit && scanned < maxScanned && labWorks.hasNext(); scanned++) {
+                examined = labWorks.next();
+                if (filter.test(examined)) {
+                    stream.append(examined.toString());
+                    count++;
+                }
+            }
+            Response response = count == 0 ? new Response("Empty") : stream.finish();
+            if (labWorks.hasNext()) {
+                response.nextCursor = PageCursor.encode(examined.getId());
+            }
+            return response;
         } catch (Exception e) {
             return new Response("ERROR: " + e.getMessage());
         }
@@ -317,7 +523,7 @@ public class ClientHandler implements Runnable {
     /**
      * Удаляет элементы коллекции с Id меньшим чем переданное.
      * <p>
-     * Проверяет принадлежность элемента пользователю, удаляет из БД и коллекции.
+     * Удаляет элементы пользователя одним изменением, см. {@link CollectionWriter#removeLower(int, String)}.
      * </p>
      *
      * @param command команда, содержащая ID удаляемого элемента
@@ -327,19 +533,12 @@ public class ClientHandler implements Runnable {
         try {
             int keyId = Integer.parseInt(command.arguments.get(0).toString());
 
-            List<Integer> removedIds = ServiceLocator.collectionSyncManager.getForRead().stream()
-                    .filter(lw -> lw.getId() < keyId && (lw.getOwnerLogin() == null || lw.getOwnerLogin().equals(command.user.username)))
-                    .map(LabWork::getId)
-                    .toList();
+            List<Integer> removedIds = ServiceLocator.collectionWriter.removeLower(keyId, command.user.username);
 
             if (removedIds.isEmpty()) {
                 return new Response("Empty");
             }
 
-            for (int id : removedIds) {
-                ServiceLocator.collectionDataBaseService.deleteLabWorkById(id, command.user.username); // удаление через БД
-            }
-            ServiceLocator.collectionSyncManager.removeAll(removedIds); // удаление из памяти
             String message = "Удалены элементы с ID: " + removedIds.stream()
                     .map(String::valueOf)
                     .collect(Collectors.joining(", "));
@@ -359,21 +558,18 @@ public class ClientHandler implements Runnable {
      * @return ответ с результатом удаления
      */
     private Response handleRemoveFirst(UserCommand command) {
-        List<LabWork> usersElements = ServiceLocator.collectionSyncManager.getAllByOwner(command.user.username);
+        LabWork firstUserElement = ServiceLocator.collectionSyncManager.getFirstByOwner(command.user.username);
 
-        if (usersElements.isEmpty()) {
+        if (firstUserElement == null) {
             return new Response("Empty");
         }
 
-        LabWork firstUserElement = usersElements.stream()
-                .min(Comparator.naturalOrder()) // сортировка по ID
-                .orElseThrow();
-
         int idToRemove = firstUserElement.getId();
 
         try {
-            ServiceLocator.collectionDataBaseService.deleteLabWorkById(idToRemove, command.user.username); // удаление из БД
-            ServiceLocator.collectionSyncManager.removeIf(idToRemove, command.user.username); // удаление из коллекции
+            if (!ServiceLocator.collectionWriter.removeById(idToRemove, command.user.username)) {
+                return new Response("Ошибка при удалении из базы данных");
+            }
 
             return new Response("Первый верхний элемент (ID: " + idToRemove + ") удален.");
         } catch (RuntimeException ex) {
@@ -395,13 +591,10 @@ public class ClientHandler implements Runnable {
             int id = Integer.parseInt(command.arguments.get(0).toString());
 
 
-            if (!ServiceLocator.collectionSyncManager.isOwner(id, command.user.username)) {
+            if (!ServiceLocator.collectionWriter.removeById(id, command.user.username)) {
                 return new Response("Вы не являетесь владельцем элемента");
             }
 
-            ServiceLocator.collectionDataBaseService.deleteLabWorkById(id, command.user.username);
-            ServiceLocator.collectionSyncManager.removeIf(id, command.user.username);
-
             return new Response("Элемент " + id + " удален");
         } catch (RuntimeException ex) {
             return new Response("Не удалось удалить элемент");
@@ -474,24 +667,57 @@ public class ClientHandler implements Runnable {
      * Возвращаются только те элементы, у которых эта величина меньше или равна заданному размеру.
      * </p>
      *
+     * <p>С {@link PagePayload} вместо количества выводятся сами элементы постранично в порядке ID,
+     * см. {@link #showPage(PagePayload, IntFunction, Predicate, ResponseStream)}.</p>
+     *
      * @param command команда пользователя, содержащая один аргумент — максимальный размер
+     * @param stream  ответ, отправляемый частями
      * @return объект {@link Response}, содержащий количество найденных элементов
      */
-    private Response handleFilterBySize(UserCommand command) {
+    private Response handleFilterBySize(UserCommand command, ResponseStream stream) {
         int size = Integer.parseInt(command.arguments.get(0).toString());
 
-        List<LabWork> filtered = ServiceLocator.collectionSyncManager.getForRead().stream()
-                .filter(lw -> {
-                    Coordinates c = lw.getCoordinates();
-                    return c != null && pow(c.getX(), 2) + pow(c.getY(), 2) <= size;
-                })
-                .toList();
+        if (command.payload instanceof PagePayload page) {
+            return showPage(page, ServiceLocator.collectionSyncManager::getAllAfter,
+                    CollectionSyncManager.sizeAtMost(size), stream);
+        }
+
+        List<LabWork> filtered = ServiceLocator.collectionSyncManager.filterBySize(size);
 
         String responseMessage = "Найдено " + filtered.size() + " элементов с размером <= " + size;
 
         return new Response(responseMessage);
     }
 
+    /**
+     * Выводит элементы коллекции, ближайшие к заданной точке.
+     * <p>
+     * Расстояние между точками евклидово, элементы выводятся в порядке возрастания расстояния.
+     * </p>
+     *
+     * @param command команда пользователя, содержащая три аргумента — количество элементов k и координаты x, y
+     * @return объект {@link Response}, содержащий найденные элементы или сообщение "Empty"
+     */
+    private Response handleNearest(UserCommand command) {
+        try {
+            int k = Integer.parseInt(command.arguments.get(0).toString());
+            long x = Long.parseLong(command.arguments.get(1).toString());
+            long y = Long.parseLong(command.arguments.get(2).toString());
+
+            List<LabWork> nearest = ServiceLocator.collectionSyncManager.nearest(k, x, y);
+
+            if (nearest.isEmpty()) {
+                return new Response("Empty");
+            }
+
+            return new Response(nearest.stream()
+                    .map(LabWork::toString)
+                    .collect(Collectors.joining("\n")));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return new Response("ERROR: Использование: nearest k x y");
+        }
+    }
+
     /**
      * Считает количество элементов, чья дисциплина "меньше" заданной (лексикографически).
      * <p>
@@ -503,7 +729,7 @@ public class ClientHandler implements Runnable {
      */
     private Response handleCountLessThanDiscipline(UserCommand command) {
         try {
-            Discipline discipline = objectMapper.readValue(command.arguments.get(0).toString(), Discipline.class);
+            Discipline discipline = command.payload(DisciplinePayload.class).discipline;
 
             long count = ServiceLocator.collectionSyncManager.countLessThanDiscipline(discipline);
 
@@ -513,10 +739,31 @@ public class ClientHandler implements Runnable {
         }
     }
 
+    /**
+     * Считает количество элементов, название дисциплины которых лежит в заданном диапазоне.
+     * <p>
+     * Границы диапазона включаются. Используется метод {@link CollectionSyncManager#countBetweenDisciplines(String, String)}.
+     * </p>
+     *
+     * @param command команда пользователя, содержащая два аргумента — нижнюю и верхнюю границу названия дисциплины
+     * @return объект {@link Response}, содержащий количество подходящих элементов
+     */
+    private Response handleCountBetweenDisciplines(UserCommand command) {
+        if (command.arguments.size() < 2) {
+            return new Response("ERROR: Укажите две дисциплины");
+        }
+        String from = command.arguments.get(0).toString();
+        String to = command.arguments.get(1).toString();
+
+        long count = ServiceLocator.collectionSyncManager.countBetweenDisciplines(from, to);
+
+        return new Response(String.format("Найдено %d элементов с дисциплиной от \"%s\" до \"%s\"", count, from, to));
+    }
+
     /**
      * Добавляет новый элемент типа {@link LabWork} в коллекцию.
      * <p>
-     * Устанавливает владельца элемента и уникальный ID, сохраняет в БД и коллекцию.
+     * Устанавливает владельца элемента и уникальный ID, сохраняет через {@link CollectionWriter}.
      * </p>
      *
      * @param command команда, содержащая добавляемый элемент
@@ -524,12 +771,8 @@ public class ClientHandler implements Runnable {
      */
     private Response handleAdd(UserCommand command) {
         try {
-            LabWork labWork = objectMapper.readValue(command.arguments.get(0).toString(), LabWork.class);
-            labWork.setOwnerLogin(command.user.username);
-            labWork.setId((ServiceLocator.collectionSyncManager.size() + 1) * 101);
-            ServiceLocator.collectionDataBaseService.addNewLabWork(labWork, command.user.username);
-
-            ServiceLocator.collectionSyncManager.add(labWork);
+            LabWork labWork = command.payload(LabWorkPayload.class).labWork;
+            ServiceLocator.collectionWriter.add(labWork, command.user.username);
 
             return new Response("Элемент успешно добавлен");
 
@@ -538,6 +781,31 @@ public class ClientHandler implements Runnable {
         }
     }
 
+    /**
+     * Добавляет несколько элементов коллекции за одну команду.
+     * <p>
+     * Все элементы сохраняются одним изменением {@link CollectionWriter#addAll(List, String)}.
+     * При ошибке не добавляется ни один элемент.
+     * </p>
+     *
+     * @param command команда, содержащая список элементов
+     * @return ответ с результатом добавления
+     */
+    private Response handleAddBatch(UserCommand command) {
+        try {
+            List<LabWork> labWorks = command.payload(LabWorkListPayload.class).labWorks;
+            if (labWorks.isEmpty()) {
+                return new Response("Empty");
+            }
+            ServiceLocator.collectionWriter.addAll(labWorks, command.user.username);
+
+            return new Response("Добавлено элементов: " + labWorks.size());
+
+        } catch (Exception e) {
+            return new Response("Не удалось сохранить элементы в БД");
+        }
+    }
+
     /**
      * Обновляет существующий элемент коллекции по его ID.
      * <p>
@@ -550,21 +818,20 @@ public class ClientHandler implements Runnable {
      */
     private Response handleUpdateId(UserCommand command) {
         try {
-            int id = Integer.parseInt(command.arguments.get(0).toString());
-            LabWork labWork = objectMapper.readValue(command.arguments.get(1).toString(), LabWork.class);
+            UpdatePayload update = command.payload(UpdatePayload.class);
+            int id = update.id;
+            LabWork labWork = update.labWork;
             labWork.setId(id);
 
-            if (!ServiceLocator.collectionDataBaseService.isOwner(id, command.user.username)) {
+            if (!ServiceLocator.collectionWriter.update(labWork, command.user.username)) {
                 return new Response("Вы не являетесь владельцем");
             }
 
-            ServiceLocator.collectionDataBaseService.updateLabWork(labWork);
-            ServiceLocator.collectionSyncManager.update(labWork, command.user.username);
             return new Response("Элемент с ID " + id + " обновлён");
+        } catch (IllegalArgumentException | NullPointerException ex) {
+            return new Response("Неверные данные");
         } catch (RuntimeException ex) {
             return new Response("Ошибка при обновлении");
-        } catch (Exception ex) {
-            return new Response("Неверные данные");
         }
     }
 }
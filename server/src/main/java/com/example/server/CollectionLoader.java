@@ -0,0 +1,236 @@
+package com.example.server;
+
+import com.example.server.database.CollectionDataBaseService;
+import com.example.server.database.RowVersionStamp;
+import com.example.server.models.LabWork;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * CollectionLoader - фоновая загрузка коллекции из БД при запуске сервера.
+ * <p>
+ * Строки приходят из БД упорядоченными по владельцу ({@link CollectionDataBaseService#LOAD_ORDER}):
+ * сначала элементы без владельца, затем владельцы по возрастанию логина. Элементы сразу добавляются
+ * в {@link CollectionSyncManager} порциями не больше {@link #BATCH_SIZE}, без списка на всю таблицу.
+ * </p>
+ *
+ * <p>Когда начинается следующий владелец, элементы всех предыдущих уже в коллекции. Поэтому пользователь,
+ * логин которого не больше последнего полностью загруженного, может работать со своими элементами
+ * до окончания загрузки. Командам, которым нужна вся коллекция, следует дождаться {@link #isComplete()}.</p>
+ *
+ * <p>Если есть локальный снимок коллекции ({@link SnapshotStore}), коллекция восстанавливается из него,
+ * а из БД догружаются только отличия: сначала сравниваются сводки версий строк, и если они не совпали,
+ * по списку пар ID - версия выбираются новые и изменённые строки и удаляются пропавшие. Если снимок
+ * прочитать или догрузить не удалось, коллекция загружается из БД целиком.</p>
+ */
+public class CollectionLoader implements Runnable {
+    /**
+     * Наибольшее число элементов, добавляемых в коллекцию одним изменением.
+     */
+    static final int BATCH_SIZE = 10_000;
+
+    private final Logger logger = LogManager.getLogger();
+    private final CollectionDataBaseService dataBaseService;
+    private final CollectionSyncManager collectionSyncManager;
+    private final SnapshotStore snapshotStore;
+
+    /**
+     * Логин последнего владельца, все элементы которого уже в коллекции.
+     */
+    private volatile String loadedThrough;
+    private volatile boolean complete;
+    private volatile boolean failed;
+
+    // Состояние потока загрузки
+    private final List<LabWork> batch = new ArrayList<>();
+    private String currentOwner;
+    private boolean ordered = true;
+    private int loaded;
+
+    public CollectionLoader(CollectionDataBaseService dataBaseService, CollectionSyncManager collectionSyncManager) {
+        this(dataBaseService, collectionSyncManager, null);
+    }
+
+    /**
+     * @param dataBaseService       сервис коллекции в БД
+     * @param collectionSyncManager наполняемая коллекция
+     * @param snapshotStore         локальный снимок коллекции или {@code null}
+     */
+    public CollectionLoader(CollectionDataBaseService dataBaseService, CollectionSyncManager collectionSyncManager,
+                            SnapshotStore snapshotStore) {
+        this.dataBaseService = dataBaseService;
+        this.collectionSyncManager = collectionSyncManager;
+        this.snapshotStore = snapshotStore;
+    }
+
+    /**
+     * Запускает загрузку в отдельном потоке.
+     */
+    public void start() {
+        Thread thread = new Thread(this, "collection-loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        if (snapshotStore != null && restore()) {
+            complete = true;
+            logger.info("Коллекция восстановлена из снимка: {} элементов за {} мс",
+                    collectionSyncManager.size(), (System.nanoTime() - start) / 1_000_000);
+            return;
+        }
+        try {
+            dataBaseService.loadInMemory(this::accept);
+            flush();
+            complete = true;
+            logger.info("Коллекция загружена: {} элементов за {} мс", loaded, (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            failed = true;
+            logger.fatal("Не удалось загрузить коллекцию: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Проверяет, загружены ли все элементы пользователя и все элементы без владельца.
+     */
+    public boolean isReady(String ownerLogin) {
+        if (complete) {
+            return true;
+        }
+        String through = loadedThrough;
+        return through != null && ownerLogin != null && compareLogins(ownerLogin, through) <= 0;
+    }
+
+    /**
+     * Проверяет, загружена ли вся коллекция.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Проверяет, завершилась ли загрузка ошибкой.
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Восстанавливает коллекцию из снимка и догружает изменения из БД.
+     *
+     * @return {@code true}, если коллекция восстановлена
+     */
+    private boolean restore() {
+        List<LabWork> restored;
+        try {
+            restored = snapshotStore.read();
+        } catch (IOException e) {
+            logger.warn("Снимок коллекции {} не прочитан: {}", snapshotStore.getPath(), e.getMessage());
+            return false;
+        }
+        if (restored == null) {
+            return false;
+        }
+
+        try {
+            RowVersionStamp saved = RowVersionStamp.of(restored);
+            RowVersionStamp current = dataBaseService.rowVersionStamp();
+            if (!saved.equals(current)) {
+                logger.info("Коллекция в БД изменилась после снимка ({} -> {}), догружаются отличия", saved, current);
+                restored = catchUp(restored);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось догрузить изменения к снимку: {}", e.getMessage());
+            return false;
+        }
+
+        collectionSyncManager.replaceAll(restored);
+        return true;
+    }
+
+    /**
+     * Сравнивает версии строк снимка и БД и возвращает коллекцию, совпадающую с БД.
+     */
+    private List<LabWork> catchUp(List<LabWork> restored) {
+        Map<Integer, LabWork> unmatched = new HashMap<>(restored.size() * 2);
+        for (LabWork labWork : restored) {
+            unmatched.put(labWork.getId(), labWork);
+        }
+        List<LabWork> actual = new ArrayList<>(restored.size());
+        List<Integer> changed = new ArrayList<>();
+
+        dataBaseService.loadRowVersions((id, rowVersion) -> {
+            LabWork known = unmatched.remove(id);
+            if (known != null && known.getRowVersion() == rowVersion) {
+                actual.add(known);
+                return;
+            }
+            changed.add(id);
+        });
+
+        // в unmatched остались строки, удалённые из БД после снимка
+        int[] ids = changed.stream().mapToInt(Integer::intValue).toArray();
+        for (int from = 0; from < ids.length; from += BATCH_SIZE) {
+            dataBaseService.loadByIds(Arrays.copyOfRange(ids, from, Math.min(ids.length, from + BATCH_SIZE)), actual::add);
+        }
+        logger.info("Догружено {} новых и изменённых строк, удалено {}", ids.length, unmatched.size());
+        return actual;
+    }
+
+    private void accept(LabWork labWork) {
+        String owner = labWork.getOwnerLogin();
+        if (loaded > 0 && !Objects.equals(owner, currentOwner)) {
+            flush();
+            if (currentOwner != null && (owner == null || compareLogins(owner, currentOwner) < 0)) {
+                // порядок БД не совпал с ожидаемым: готовность отдельных владельцев определить нельзя
+                ordered = false;
+                loadedThrough = null;
+                logger.warn("Элементы пришли из БД не по порядку владельцев, коллекция будет доступна после полной загрузки");
+            }
+            if (ordered && currentOwner != null) {
+                loadedThrough = currentOwner;
+            }
+        }
+        currentOwner = owner;
+        batch.add(labWork);
+        loaded++;
+        if (batch.size() >= BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (!batch.isEmpty()) {
+            collectionSyncManager.addAll(batch, currentOwner);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Сравнивает логины по кодовым точкам, как сравнение {@code COLLATE "C"} в БД сравнивает байты UTF-8.
+     */
+    static int compareLogins(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+}
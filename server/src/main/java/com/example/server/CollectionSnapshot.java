@@ -0,0 +1,303 @@
+package com.example.server;
+
+import com.example.server.models.LabWork;
+
+import java.util.*;
+
+/**
+ * CollectionSnapshot - неизменяемый снимок коллекции вместе со всеми её индексами.
+ * <p>
+ * Снимок публикуется {@link CollectionSyncManager} после каждого изменения и никогда не меняется,
+ * поэтому читатели работают с ним без блокировок и без копирования. Соседние снимки разделяют
+ * все неизменённые узлы индексов, так что изменение одного элемента стоит O(log n) памяти.
+ * </p>
+ *
+ * <p>Каждый опубликованный снимок получает номер версии, на единицу больший предыдущего.</p>
+ */
+public final class CollectionSnapshot {
+    static final CollectionSnapshot EMPTY = new CollectionSnapshot(0,
+            PersistentTreap.empty(),
+            PersistentTreap.empty(Comparator.nullsFirst(Comparator.naturalOrder())),
+            DisciplineIndex.EMPTY,
+            SpatialIndex.EMPTY);
+
+    private final long version;
+    private final PersistentTreap<Integer, LabWork> byId;
+    /**
+     * Элементы каждого владельца, упорядоченные по ID. Ключ {@code null} - элементы без владельца.
+     */
+    private final PersistentTreap<String, PersistentTreap<Integer, LabWork>> byOwner;
+    private final DisciplineIndex disciplines;
+    private final SpatialIndex coordinates;
+
+    private CollectionSnapshot(long version,
+                               PersistentTreap<Integer, LabWork> byId,
+                               PersistentTreap<String, PersistentTreap<Integer, LabWork>> byOwner,
+                               DisciplineIndex disciplines,
+                               SpatialIndex coordinates) {
+        this.version = version;
+        this.byId = byId;
+        this.byOwner = byOwner;
+        this.disciplines = disciplines;
+        this.coordinates = coordinates;
+    }
+
+    /**
+     * Возвращает номер версии снимка.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public boolean isEmpty() {
+        return byId.isEmpty();
+    }
+
+    /**
+     * Возвращает элемент по ID или {@code null}.
+     */
+    public LabWork getById(int id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Возвращает все элементы в порядке возрастания ID. Представление не копирует данные.
+     */
+    public Collection<LabWork> values() {
+        return byId.values();
+    }
+
+    /**
+     * Возвращает элементы пользователя (и элементы без владельца) в порядке возрастания ID.
+     * Представление не копирует данные.
+     */
+    public Collection<LabWork> getAllByOwner(String ownerLogin) {
+        PersistentTreap<Integer, LabWork> own = ownGroup(ownerLogin);
+        PersistentTreap<Integer, LabWork> shared = byOwner.get(null);
+        if (own == null || shared == null) {
+            PersistentTreap<Integer, LabWork> only = own != null ? own : shared;
+            return only == null ? List.of() : only.values();
+        }
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<LabWork> iterator() {
+                return new MergeById(own.values().iterator(), shared.values().iterator());
+            }
+
+            @Override
+            public int size() {
+                return own.size() + shared.size();
+            }
+        };
+    }
+
+    /**
+     * Возвращает элементы с ID больше {@code afterId} в порядке возрастания ID.
+     * Начало представления находится за O(log n), данные не копируются.
+     */
+    public Iterable<LabWork> valuesAfter(int afterId) {
+        return afterId == Integer.MAX_VALUE ? List.of() : byId.valuesBetween(afterId + 1, null);
+    }
+
+    /**
+     * Возвращает элементы пользователя (и элементы без владельца) с ID больше {@code afterId}
+     * в порядке возрастания ID. Начало представления находится за O(log n), данные не копируются.
+     */
+    public Iterable<LabWork> getAllByOwnerAfter(String ownerLogin, int afterId) {
+        if (afterId == Integer.MAX_VALUE) {
+            return List.of();
+        }
+        PersistentTreap<Integer, LabWork> own = ownGroup(ownerLogin);
+        PersistentTreap<Integer, LabWork> shared = byOwner.get(null);
+        Iterable<LabWork> ownTail = own == null ? List.of() : own.valuesBetween(afterId + 1, null);
+        Iterable<LabWork> sharedTail = shared == null ? List.of() : shared.valuesBetween(afterId + 1, null);
+        return () -> new MergeById(ownTail.iterator(), sharedTail.iterator());
+    }
+
+    /**
+     * Возвращает элемент пользователя (или без владельца) с наименьшим ID или {@code null}.
+     */
+    public LabWork getFirstByOwner(String ownerLogin) {
+        PersistentTreap<Integer, LabWork> own = ownGroup(ownerLogin);
+        PersistentTreap<Integer, LabWork> shared = byOwner.get(null);
+        LabWork first = own == null ? null : own.first();
+        LabWork sharedFirst = shared == null ? null : shared.first();
+        if (first == null || sharedFirst == null) {
+            return first != null ? first : sharedFirst;
+        }
+        return first.getId() < sharedFirst.getId() ? first : sharedFirst;
+    }
+
+    /**
+     * Подсчёт элементов, доступных пользователю (его собственных и без владельца).
+     */
+    public int sizeByOwner(String ownerLogin) {
+        PersistentTreap<Integer, LabWork> own = ownGroup(ownerLogin);
+        PersistentTreap<Integer, LabWork> shared = byOwner.get(null);
+        return (own == null ? 0 : own.size()) + (shared == null ? 0 : shared.size());
+    }
+
+    /**
+     * Подсчёт элементов, название дисциплины которых строго меньше {@code name}.
+     */
+    public long countLessThanDiscipline(String name) {
+        return disciplines.countLess(name);
+    }
+
+    /**
+     * Подсчёт элементов, название дисциплины которых лежит между {@code from} и {@code to} включительно.
+     */
+    public long countBetweenDisciplines(String from, String to) {
+        return disciplines.countBetween(from, to);
+    }
+
+    /**
+     * Возвращает элементы, у которых x² + y² не превышает {@code size}.
+     */
+    public List<LabWork> filterBySize(long size) {
+        return coordinates.withinRadius(size);
+    }
+
+    /**
+     * Возвращает не более {@code k} элементов, ближайших к точке ({@code x}, {@code y}), в порядке возрастания расстояния.
+     */
+    public List<LabWork> nearest(int k, long x, long y) {
+        return coordinates.nearest(k, x, y);
+    }
+
+    /**
+     * Возвращает снимок с элементом {@code labWork} вместо элемента с тем же ID. Версия не меняется.
+     */
+    CollectionSnapshot put(LabWork labWork) {
+        CollectionSnapshot base = remove(labWork.getId());
+        PersistentTreap<Integer, LabWork> group = base.byOwner.get(labWork.getOwnerLogin());
+        if (group == null) {
+            group = PersistentTreap.empty();
+        }
+        return new CollectionSnapshot(version,
+                base.byId.put(labWork.getId(), labWork),
+                base.byOwner.put(labWork.getOwnerLogin(), group.put(labWork.getId(), labWork)),
+                hasDiscipline(labWork) ? base.disciplines.add(labWork.getDiscipline().getName()) : base.disciplines,
+                base.coordinates.add(labWork));
+    }
+
+    /**
+     * Возвращает снимок без элемента с указанным ID. Версия не меняется.
+     */
+    CollectionSnapshot remove(int id) {
+        LabWork removed = byId.get(id);
+        if (removed == null) {
+            return this;
+        }
+        PersistentTreap<Integer, LabWork> group = byOwner.get(removed.getOwnerLogin()).remove(id);
+        return new CollectionSnapshot(version,
+                byId.remove(id),
+                group.isEmpty() ? byOwner.remove(removed.getOwnerLogin()) : byOwner.put(removed.getOwnerLogin(), group),
+                hasDiscipline(removed) ? disciplines.remove(removed.getDiscipline().getName()) : disciplines,
+                coordinates.remove(removed));
+    }
+
+    /**
+     * Возвращает снимок без элементов владельца {@code ownerLogin} с ID меньше {@code id}. Версия не меняется.
+     * <p>
+     * Группа владельца делится по ID за O(log n), из остальных индексов удаляются только отрезанные элементы.
+     * </p>
+     */
+    CollectionSnapshot removeLower(String ownerLogin, int id) {
+        PersistentTreap<Integer, LabWork> group = byOwner.get(ownerLogin);
+        if (group == null) {
+            return this;
+        }
+        PersistentTreap<Integer, LabWork> removed = group.headBelow(id);
+        if (removed.isEmpty()) {
+            return this;
+        }
+        PersistentTreap<Integer, LabWork> remaining = group.tailFrom(id);
+        PersistentTreap<Integer, LabWork> ids = byId;
+        DisciplineIndex updatedDisciplines = disciplines;
+        SpatialIndex updatedCoordinates = coordinates;
+        for (LabWork labWork : removed.values()) {
+            ids = ids.remove(labWork.getId());
+            if (hasDiscipline(labWork)) {
+                updatedDisciplines = updatedDisciplines.remove(labWork.getDiscipline().getName());
+            }
+            updatedCoordinates = updatedCoordinates.remove(labWork);
+        }
+        return new CollectionSnapshot(version, ids,
+                remaining.isEmpty() ? byOwner.remove(ownerLogin) : byOwner.put(ownerLogin, remaining),
+                updatedDisciplines, updatedCoordinates);
+    }
+
+    /**
+     * Возвращает снимок без всех элементов владельца {@code ownerLogin}
+     * ({@code null} - без элементов без владельца). Версия не меняется.
+     */
+    CollectionSnapshot removeGroup(String ownerLogin) {
+        PersistentTreap<Integer, LabWork> group = byOwner.get(ownerLogin);
+        if (group == null) {
+            return this;
+        }
+        CollectionSnapshot result = this;
+        for (LabWork labWork : group.values()) {
+            result = result.remove(labWork.getId());
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает этот же снимок с номером версии {@code version}.
+     */
+    CollectionSnapshot withVersion(long version) {
+        return new CollectionSnapshot(version, byId, byOwner, disciplines, coordinates);
+    }
+
+    private PersistentTreap<Integer, LabWork> ownGroup(String ownerLogin) {
+        return ownerLogin == null ? null : byOwner.get(ownerLogin);
+    }
+
+    private static boolean hasDiscipline(LabWork labWork) {
+        return labWork.getDiscipline() != null && labWork.getDiscipline().getName() != null;
+    }
+
+    /**
+     * Сливает две упорядоченные по ID последовательности элементов.
+     */
+    private static final class MergeById implements Iterator<LabWork> {
+        private final Iterator<LabWork> first;
+        private final Iterator<LabWork> second;
+        private LabWork x;
+        private LabWork y;
+
+        MergeById(Iterator<LabWork> first, Iterator<LabWork> second) {
+            this.first = first;
+            this.second = second;
+            this.x = first.hasNext() ? first.next() : null;
+            this.y = second.hasNext() ? second.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return x != null || y != null;
+        }
+
+        @Override
+        public LabWork next() {
+            LabWork result;
+            if (y == null || (x != null && x.getId() < y.getId())) {
+                if (x == null) {
+                    throw new NoSuchElementException();
+                }
+                result = x;
+                x = first.hasNext() ? first.next() : null;
+            } else {
+                result = y;
+                y = second.hasNext() ? second.next() : null;
+            }
+            return result;
+        }
+    }
+}
@@ -9,52 +9,124 @@ import org.apache.logging.log4j.Logger;
 
 import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 /**
  * CollectionSyncManager - потокобезопасный менеджер коллекции.
+ * <p>
+ * Коллекция вместе с индексами хранится в неизменяемом снимке {@link CollectionSnapshot}:
+ * индекс по ID, индекс владелец → элементы, {@link DisciplineIndex} и сеточный {@link SpatialIndex}.
+ * Элементы без владельца хранятся в отдельной группе и видны всем пользователям.
+ * </p>
+ *
+ * <p>Читатели берут текущий снимок без блокировок и без копирования коллекции. Все методы чтения
+ * обращаются к одному снимку, поэтому {@code show_owner} и {@code info} видят согласованное состояние
+ * всей коллекции, даже пока другие пользователи её меняют.</p>
+ *
+ * <p>Писатели строят из текущего снимка новый (общий со старым во всём, кроме изменённых путей)
+ * и публикуют его сравнением с обменом со следующим номером версии. Изменения одного владельца
+ * выполняются по очереди под блокировкой его полосы ({@link #OWNER_STRIPES} полос), изменения разных
+ * владельцев идут параллельно: при одновременной публикации проигравший пересчитывает изменение
+ * от нового снимка. Если это не удалось {@link #MAX_OPTIMISTIC_ATTEMPTS} раз подряд, изменение
+ * выполняется в монопольном режиме.</p>
  */
 public class CollectionSyncManager {
+    /**
+     * Количество полос блокировок владельцев, степень двойки.
+     */
+    static final int OWNER_STRIPES = 64;
+
+    /**
+     * Количество попыток опубликовать изменение без монопольной блокировки.
+     */
+    static final int MAX_OPTIMISTIC_ATTEMPTS = 8;
+
     private final Logger logger = LogManager.getLogger();
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
-    private final PriorityQueue<LabWork> collection = new PriorityQueue<>();
-    
+    private final ReentrantLock[] ownerLocks = new ReentrantLock[OWNER_STRIPES];
+    /**
+     * Разделяемая блокировка берётся писателями на время оптимистичных попыток,
+     * монопольная - при замене всей коллекции и после исчерпания попыток.
+     */
+    private final ReadWriteLock publishLock = new ReentrantReadWriteLock();
+    private final AtomicReference<CollectionSnapshot> snapshot = new AtomicReference<>(CollectionSnapshot.EMPTY);
+
+    public CollectionSyncManager() {
+        for (int i = 0; i < OWNER_STRIPES; i++) {
+            ownerLocks[i] = new ReentrantLock();
+        }
+    }
 
-    public CollectionSyncManager() {}
+    /**
+     * Возвращает текущий снимок коллекции.
+     * Снимок не меняется, все вызовы его методов видят одно и то же состояние.
+     */
+    public CollectionSnapshot snapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Возвращает номер версии текущего снимка коллекции.
+     */
+    public long getVersion() {
+        return snapshot().getVersion();
+    }
 
     /**
      * Добавляет новый элемент в коллекцию.
+     * Элемент с тем же ID заменяется.
      */
     public void add(LabWork labWork) {
-        lock.writeLock().lock();
-        try {
-            if (!collection.add(labWork)) {
-                logger.warn("Элемент не был добавлен: {}", labWork);
-            } else {
-                logger.info("Добавлен элемент ID: {}", labWork.getId());
-            }
-        } finally {
-            lock.writeLock().unlock();
+        boolean[] replaced = new boolean[1];
+        mutate(labWork.getOwnerLogin(), current -> {
+            replaced[0] = current.getById(labWork.getId()) != null;
+            return current.put(labWork);
+        });
+        if (replaced[0]) {
+            logger.warn("Элемент с ID {} был заменён: {}", labWork.getId(), labWork);
+        } else {
+            logger.info("Добавлен элемент ID: {}", labWork.getId());
         }
     }
 
+    /**
+     * Добавляет элементы одного владельца одним изменением коллекции.
+     * Элементы с уже существующими ID заменяются.
+     *
+     * @param labWorks   добавляемые элементы
+     * @param ownerLogin логин владельца элементов
+     */
+    public void addAll(Collection<LabWork> labWorks, String ownerLogin) {
+        mutate(ownerLogin, current -> {
+            CollectionSnapshot updated = current;
+            for (LabWork labWork : labWorks) {
+                updated = updated.put(labWork);
+            }
+            return updated;
+        });
+        logger.info("Добавлено {} элементов пользователя {}", labWorks.size(), ownerLogin);
+    }
+
     /**
      * Удаляет элемент по ID и логину владельца.
      */
     public boolean removeIf(int id, String ownerLogin) {
-        lock.writeLock().lock();
-        try {
-            boolean removed = collection.removeIf(lw -> lw.getId() == id && (lw.getOwnerLogin() == null || lw.getOwnerLogin().equals(ownerLogin)));
-            if (removed) {
-                logger.info("Удалён элемент: {}", id);
-            } else {
-                logger.warn("Элемент {} не найден или не принадлежит вам", id);
-            }
-            return removed;
-        } finally {
-            lock.writeLock().unlock();
+        boolean[] removed = new boolean[1];
+        mutate(ownerLogin, current -> {
+            removed[0] = isOwnedBy(current.getById(id), ownerLogin);
+            return removed[0] ? current.remove(id) : current;
+        });
+        if (removed[0]) {
+            logger.info("Удалён элемент: {}", id);
+        } else {
+            logger.warn("Элемент {} не найден или не принадлежит вам", id);
         }
+        return removed[0];
     }
 
     /**
@@ -63,151 +135,214 @@ public class CollectionSyncManager {
      * @param newElements новые элементы
      */
     public void replaceAll(Collection<LabWork> newElements) {
-        lock.writeLock().lock();
+        CollectionSnapshot loaded = CollectionSnapshot.EMPTY;
+        for (LabWork labWork : newElements) {
+            loaded = loaded.put(labWork);
+        }
+        publishLock.writeLock().lock();
         try {
-            collection.clear();
-            collection.addAll(newElements);
+            snapshot.set(loaded.withVersion(snapshot.get().getVersion() + 1));
         } finally {
-            lock.writeLock().unlock();
+            publishLock.writeLock().unlock();
         }
     }
 
+    /**
+     * Заменяет элементы с указанными ID их состоянием из БД одним изменением коллекции:
+     * элементы из {@code actual} добавляются или заменяются, остальные удаляются.
+     *
+     * @param ownerLogin логин владельца элементов
+     * @param ids        ID сверяемых элементов
+     * @param actual     элементы с этими ID, найденные в БД
+     */
+    public void restore(String ownerLogin, int[] ids, Collection<LabWork> actual) {
+        mutate(ownerLogin, current -> {
+            CollectionSnapshot updated = current;
+            for (int id : ids) {
+                updated = updated.remove(id);
+            }
+            for (LabWork labWork : actual) {
+                updated = updated.put(labWork);
+            }
+            return updated;
+        });
+        logger.info("Из БД восстановлено {} из {} элементов пользователя {}", actual.size(), ids.length, ownerLogin);
+    }
+
+    /**
+     * Удаляет элементы с указанными ID.
+     */
     public void removeAll(List<Integer> ids) {
-        lock.writeLock().lock();
-        try {
-            collection.removeIf(lw -> ids.contains(lw.getId()));
-            logger.info("Удалено {} элементов", ids.size());
-        } finally {
-            lock.writeLock().unlock();
-        }
+        int[] removed = new int[1];
+        mutate(null, current -> {
+            CollectionSnapshot updated = current;
+            for (int id : ids) {
+                updated = updated.remove(id);
+            }
+            removed[0] = current.size() - updated.size();
+            return updated;
+        });
+        logger.info("Удалено {} элементов", removed[0]);
+    }
+
+    /**
+     * Удаляет элементы владельца с ID меньше заданного. Элементы без владельца не затрагиваются.
+     *
+     * @param id         граница ID (не включается)
+     * @param ownerLogin логин владельца
+     * @return количество удалённых элементов
+     */
+    public int removeLower(int id, String ownerLogin) {
+        int[] removed = new int[1];
+        mutate(ownerLogin, current -> {
+            CollectionSnapshot updated = current.removeLower(ownerLogin, id);
+            removed[0] = current.size() - updated.size();
+            return updated;
+        });
+        logger.info("Удалено {} элементов пользователя {} с ID меньше {}", removed[0], ownerLogin, id);
+        return removed[0];
     }
 
     /**
      * Обновляет элемент в коллекции.
      */
     public boolean update(LabWork updated, String ownerLogin) {
-        lock.writeLock().lock();
-        try {
-            boolean removed = collection.removeIf(lw -> lw.getId() == updated.getId() && (lw.getOwnerLogin() == null || lw.getOwnerLogin().equals(ownerLogin)));
-            if (removed) {
-                collection.add(updated);
-                logger.info("Обновлён элемент ID: {}", updated.getId());
-            } else {
-                logger.warn("Не удалось обновить элемент {}: не владелец или не найден", updated.getId());
-            }
-            return removed;
-        } finally {
-            lock.writeLock().unlock();
+        boolean[] owned = new boolean[1];
+        mutate(ownerLogin, current -> {
+            owned[0] = isOwnedBy(current.getById(updated.getId()), ownerLogin);
+            return owned[0] ? current.put(updated) : current;
+        });
+        if (owned[0]) {
+            logger.info("Обновлён элемент ID: {}", updated.getId());
+        } else {
+            logger.warn("Не удалось обновить элемент {}: не владелец или не найден", updated.getId());
         }
+        return owned[0];
     }
 
     /**
-     * Возвращает копию коллекции для чтения.
+     * Возвращает коллекцию для чтения, упорядоченную по ID.
+     * Коллекция - неизменяемое представление текущего снимка, данные не копируются.
      */
     public Collection<LabWork> getForRead() {
-        lock.readLock().lock();
-        try {
-            return List.copyOf(collection);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return snapshot().values();
     }
 
     /**
-     * Возвращает всех пользователей.
+     * Возвращает все элементы коллекции, упорядоченные по ID.
      */
-    public List<LabWork> getAll() {
-        lock.readLock().lock();
-        try {
-            return new ArrayList<>(collection);
-        } finally {
-            lock.readLock().unlock();
-        }
+    public Collection<LabWork> getAll() {
+        return snapshot().values();
     }
 
     /**
      * Сохраняет при завершении
      */
     public void saveOnExit(CollectionDataBaseService labWorkDAO, String currentOwner) throws RuntimeException {
-        lock.readLock().lock();
-        try {
-            labWorkDAO.saveAll(collection, currentOwner);
-        } finally {
-            lock.readLock().unlock();
-        }
+        labWorkDAO.saveAll(snapshot().values(), currentOwner);
     }
 
 
-    public List<LabWork> getAllByOwner(String ownerLogin) {
-        lock.readLock().lock();
-        try {
-            return collection.stream()
-                    .filter(lw -> lw.getOwnerLogin() == null || lw.getOwnerLogin().equals(ownerLogin))
-                    .toList();
-        } finally {
-            lock.readLock().unlock();
-        }
+    /**
+     * Возвращает элементы пользователя (и элементы без владельца), упорядоченные по ID.
+     */
+    public Collection<LabWork> getAllByOwner(String ownerLogin) {
+        return snapshot().getAllByOwner(ownerLogin);
+    }
+
+    /**
+     * Возвращает элементы коллекции с ID больше {@code afterId}, упорядоченные по ID.
+     * Представление текущего снимка для постраничного чтения, данные не копируются.
+     */
+    public Iterable<LabWork> getAllAfter(int afterId) {
+        return snapshot().valuesAfter(afterId);
+    }
+
+    /**
+     * Возвращает элементы пользователя (и элементы без владельца) с ID больше {@code afterId}, упорядоченные по ID.
+     */
+    public Iterable<LabWork> getAllByOwnerAfter(String ownerLogin, int afterId) {
+        return snapshot().getAllByOwnerAfter(ownerLogin, afterId);
+    }
+
+    /**
+     * Возвращает элемент пользователя с наименьшим ID.
+     *
+     * @return первый элемент пользователя или {@code null}, если элементов нет
+     */
+    public LabWork getFirstByOwner(String ownerLogin) {
+        return snapshot().getFirstByOwner(ownerLogin);
     }
 
     /**
      * Проверяет, пуста ли коллекция.
      */
     public boolean isEmpty() {
-        lock.readLock().lock();
-        try {
-            return collection.isEmpty();
-        } finally {
-            lock.readLock().unlock();
-        }
+        return snapshot().isEmpty();
     }
 
     /**
      * Подсчёт элементов с дисциплиной меньше заданной.
      */
     public long countLessThanDiscipline(Discipline discipline) {
-        lock.readLock().lock();
-        try {
-            return collection.stream()
-                    .filter(lw -> lw.getDiscipline() != null && lw.getDiscipline().compareTo(discipline) < 0)
-                    .count();
-        } finally {
-            lock.readLock().unlock();
-        }
+        return snapshot().countLessThanDiscipline(discipline.getName());
+    }
+
+    /**
+     * Подсчёт элементов, название дисциплины которых лежит между {@code from} и {@code to} включительно.
+     */
+    public long countBetweenDisciplines(String from, String to) {
+        return snapshot().countBetweenDisciplines(from, to);
+    }
+
+    /**
+     * Возвращает элементы, у которых x² + y² не превышает {@code size}.
+     */
+    public List<LabWork> filterBySize(long size) {
+        return snapshot().filterBySize(size);
+    }
+
+    /**
+     * Возвращает условие, которому удовлетворяют элементы {@link #filterBySize(long)}: x² + y² не превышает {@code size}.
+     */
+    public static Predicate<LabWork> sizeAtMost(long size) {
+        return labWork -> SpatialIndex.isWithin(labWork.getCoordinates(), size);
+    }
+
+    /**
+     * Возвращает не более {@code k} элементов, ближайших к точке ({@code x}, {@code y}), в порядке возрастания расстояния.
+     */
+    public List<LabWork> nearest(int k, long x, long y) {
+        return snapshot().nearest(k, x, y);
     }
 
     /**
      * Подсчёт колличества элементов
      */
     public int size() {
-        lock.readLock().lock();
-        try {
-            return collection.size();
-        } finally {
-            lock.readLock().unlock();
-        }
+        return snapshot().size();
+    }
+
+    /**
+     * Подсчёт элементов, доступных пользователю (его собственных и без владельца).
+     */
+    public int sizeByOwner(String ownerLogin) {
+        return snapshot().sizeByOwner(ownerLogin);
     }
 
     /**
      * Сортирует всю коллекцию.
+     * <p>Коллекция и так всегда упорядочена по ID, метод оставлен для совместимости.</p>
      */
     public void sort() {
-        lock.writeLock().lock();
-        try {
-            List<LabWork> sortedList = new ArrayList<>(collection);
-            sortedList.sort(Comparator.naturalOrder());
-            collection.clear();
-            collection.addAll(sortedList);
-            logger.info("Коллекция отсортирована");
-        } finally {
-            lock.writeLock().unlock();
-        }
+        logger.info("Коллекция отсортирована");
     }
 
     /**
      * Возвращает тип коллекции.
      */
     public String getCollectionType() {
-        return collection.getClass().getSimpleName();
+        return PersistentTreap.class.getSimpleName();
     }
 
     /**
@@ -222,36 +357,101 @@ public class CollectionSyncManager {
      * Очищает коллекцию для пользователя.
      */
     public void clear(String ownerLogin) {
-        lock.writeLock().lock();
-        try {
-            collection.removeIf(lw -> lw.getOwnerLogin() == null || lw.getOwnerLogin().equals(ownerLogin));
-            logger.info("Коллекция очищена для пользователя: {}", ownerLogin);
-        } finally {
-            lock.writeLock().unlock();
-        }
+        mutate(ownerLogin, current -> {
+            CollectionSnapshot updated = ownerLogin == null ? current : current.removeGroup(ownerLogin);
+            return updated.removeGroup(null);
+        });
+        logger.info("Коллекция очищена для пользователя: {}", ownerLogin);
     }
 
     /**
      * Получить элемент по ID.
      */
     public LabWork getById(int id) {
-        lock.readLock().lock();
+        return snapshot().getById(id);
+    }
+
+    /**
+     * Проверяет, принадлежит ли элемент пользователю.
+     */
+    public boolean isOwner(int id, String login) {
+        return isOwnedBy(getById(id), login);
+    }
+
+    /**
+     * Проверяет, доступен ли элемент пользователю: элемент без владельца доступен всем.
+     */
+    private static boolean isOwnedBy(LabWork labWork, String login) {
+        return labWork != null && (labWork.getOwnerLogin() == null || labWork.getOwnerLogin().equals(login));
+    }
+
+    /**
+     * Выполняет действие под блокировкой полосы владельца.
+     * <p>
+     * Изменения коллекции этим владельцем внутри действия и в других потоках упорядочены так же,
+     * как побочные эффекты действий: это позволяет записать изменение во внешний журнал в том же порядке,
+     * в каком оно применяется к коллекции.
+     * </p>
+     *
+     * @param ownerLogin владелец
+     * @param action     действие
+     * @return результат действия
+     */
+    public <T> T withOwnerLock(String ownerLogin, Supplier<T> action) {
+        ReentrantLock ownerLock = ownerLocks[stripe(ownerLogin)];
+        ownerLock.lock();
         try {
-            return collection.stream()
-                    .filter(lw -> lw.getId() == id)
-                    .findFirst()
-                    .orElse(null);
+            return action.get();
         } finally {
-            lock.readLock().unlock();
+            ownerLock.unlock();
         }
     }
 
     /**
-     * Проверяет, принадлежит ли элемент пользователю.
+     * Применяет изменение к текущему снимку и публикует результат со следующим номером версии.
+     * <p>
+     * Изменение может быть вычислено несколько раз, каждый раз от более нового снимка, поэтому оно
+     * не должно иметь побочных эффектов, кроме запоминания результата последнего вычисления.
+     * Если изменение вернуло тот же снимок, публикации не происходит.
+     * </p>
+     *
+     * @param ownerLogin владелец, изменения которого выполняются по очереди
+     * @param change     функция, строящая новый снимок из текущего
      */
-    public boolean isOwner(int id, String login) {
-        LabWork lw = getById(id);
-        if (lw == null) return false;
-        return lw.getOwnerLogin() == null || lw.getOwnerLogin().equals(login);
+    private void mutate(String ownerLogin, UnaryOperator<CollectionSnapshot> change) {
+        ReentrantLock ownerLock = ownerLocks[stripe(ownerLogin)];
+        ownerLock.lock();
+        try {
+            publishLock.readLock().lock();
+            try {
+                for (int attempt = 0; attempt < MAX_OPTIMISTIC_ATTEMPTS; attempt++) {
+                    if (tryPublish(change)) {
+                        return;
+                    }
+                }
+            } finally {
+                publishLock.readLock().unlock();
+            }
+            logger.debug("Изменение коллекции выполняется монопольно после {} попыток", MAX_OPTIMISTIC_ATTEMPTS);
+            publishLock.writeLock().lock();
+            try {
+                tryPublish(change);
+            } finally {
+                publishLock.writeLock().unlock();
+            }
+        } finally {
+            ownerLock.unlock();
+        }
+    }
+
+    private boolean tryPublish(UnaryOperator<CollectionSnapshot> change) {
+        CollectionSnapshot current = snapshot.get();
+        CollectionSnapshot updated = change.apply(current);
+        return updated == current || snapshot.compareAndSet(current, updated.withVersion(current.getVersion() + 1));
+    }
+
+    private static int stripe(String ownerLogin) {
+        int h = ownerLogin == null ? 0 : ownerLogin.hashCode();
+        return (h ^ (h >>> 16)) & (OWNER_STRIPES - 1);
     }
 }
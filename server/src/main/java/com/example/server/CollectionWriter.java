@@ -0,0 +1,65 @@
+package com.example.server;
+
+import com.example.server.models.LabWork;
+
+import java.util.List;
+
+/**
+ * Запись изменений коллекции пользователя в память и в БД.
+ * <p>
+ * Способ записи задаётся {@link DurabilityMode}: {@link DirectCollectionWriter} меняет коллекцию после
+ * записи в БД, {@link WriteBehindCollectionWriter} - после записи в локальный журнал, а в БД изменения
+ * записываются в фоне. Методы бросают {@link RuntimeException}, если изменение не сохранено, и тогда
+ * коллекция в памяти не меняется.
+ * </p>
+ */
+public interface CollectionWriter extends AutoCloseable {
+    /**
+     * Добавляет элемент и назначает ему ID.
+     */
+    void add(LabWork labWork, String ownerLogin);
+
+    /**
+     * Добавляет все элементы или ни одного и назначает им ID.
+     */
+    void addAll(List<LabWork> labWorks, String ownerLogin);
+
+    /**
+     * Заменяет элемент пользователя с ID {@code labWork.getId()}.
+     *
+     * @return {@code false}, если пользователь не владелец элемента
+     */
+    boolean update(LabWork labWork, String ownerLogin);
+
+    /**
+     * Удаляет элемент пользователя по ID.
+     *
+     * @return {@code false}, если пользователь не владелец элемента
+     */
+    boolean removeById(int id, String ownerLogin);
+
+    /**
+     * Удаляет элементы пользователя с ID меньше заданного.
+     *
+     * @return ID удалённых элементов в порядке возрастания
+     */
+    List<Integer> removeLower(int id, String ownerLogin);
+
+    /**
+     * Удаляет все элементы пользователя.
+     */
+    void clear(String ownerLogin);
+
+    /**
+     * Запускает фоновые потоки записи, если они есть.
+     */
+    default void start() {
+    }
+
+    /**
+     * Дописывает отложенные изменения и останавливает фоновые потоки.
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.server;
+
+import com.example.server.database.CollectionDataBaseService;
+import com.example.server.database.LabWorkMutation;
+import com.example.server.database.WriteCoordinator;
+import com.example.server.models.LabWork;
+
+import java.util.List;
+
+/**
+ * DirectCollectionWriter - запись изменения в БД, затем в коллекцию в памяти.
+ * <p>
+ * Ответ клиенту отправляется после подтверждения БД, ID новых элементов назначает БД.
+ * Если задан {@link WriteCoordinator}, изменения одновременно работающих клиентов фиксируются в БД
+ * общими транзакциями, а принадлежность элемента при обновлении проверяет сам запрос UPDATE.
+ * </p>
+ */
+public class DirectCollectionWriter implements CollectionWriter {
+    private final CollectionDataBaseService dataBaseService;
+    private final CollectionSyncManager collectionSyncManager;
+    private final WriteCoordinator writeCoordinator;
+
+    public DirectCollectionWriter(CollectionDataBaseService dataBaseService, CollectionSyncManager collectionSyncManager) {
+        this(dataBaseService, collectionSyncManager, null);
+    }
+
+    /**
+     * @param dataBaseService       сервис коллекции в БД
+     * @param collectionSyncManager коллекция в памяти
+     * @param writeCoordinator      групповая фиксация изменений или {@code null}, если каждое изменение
+     *                              фиксируется отдельно
+     */
+    public DirectCollectionWriter(CollectionDataBaseService dataBaseService, CollectionSyncManager collectionSyncManager,
+                                  WriteCoordinator writeCoordinator) {
+        this.dataBaseService = dataBaseService;
+        this.collectionSyncManager = collectionSyncManager;
+        this.writeCoordinator = writeCoordinator;
+    }
+
+    @Override
+    public void add(LabWork labWork, String ownerLogin) {
+        labWork.setOwnerLogin(ownerLogin);
+        if (writeCoordinator != null) {
+            writeCoordinator.execute(LabWorkMutation.insert(List.of(labWork), ownerLogin));
+        } else {
+            dataBaseService.addNewLabWork(labWork, ownerLogin);
+        }
+        collectionSyncManager.add(labWork);
+    }
+
+    @Override
+    public void addAll(List<LabWork> labWorks, String ownerLogin) {
+        for (LabWork labWork : labWorks) {
+            labWork.setOwnerLogin(ownerLogin);
+        }
+        if (writeCoordinator != null) {
+            writeCoordinator.execute(LabWorkMutation.insert(labWorks, ownerLogin));
+        } else {
+            dataBaseService.addLabWorks(labWorks, ownerLogin);
+        }
+        collectionSyncManager.addAll(labWorks, ownerLogin);
+    }
+
+    @Override
+    public boolean update(LabWork labWork, String ownerLogin) {
+        labWork.setOwnerLogin(ownerLogin);
+        if (writeCoordinator != null) {
+            if (writeCoordinator.execute(LabWorkMutation.update(labWork, ownerLogin)).isEmpty()) {
+                return false;
+            }
+        } else {
+            if (!dataBaseService.isOwner(labWork.getId(), ownerLogin)) {
+                return false;
+            }
+            dataBaseService.updateLabWork(labWork);
+        }
+        collectionSyncManager.update(labWork, ownerLogin);
+        return true;
+    }
+
+    @Override
+    public boolean removeById(int id, String ownerLogin) {
+        if (!collectionSyncManager.isOwner(id, ownerLogin)) {
+            return false;
+        }
+        if (writeCoordinator != null) {
+            if (writeCoordinator.execute(LabWorkMutation.delete(id, ownerLogin)).isEmpty()) {
+                throw new RuntimeException("Delete labwork failed");
+            }
+        } else {
+            dataBaseService.deleteLabWorkById(id, ownerLogin);
+        }
+        collectionSyncManager.removeIf(id, ownerLogin);
+        return true;
+    }
+
+    @Override
+    public List<Integer> removeLower(int id, String ownerLogin) {
+        List<Integer> removedIds = writeCoordinator != null
+                ? writeCoordinator.execute(LabWorkMutation.deleteLower(id, ownerLogin))
+                : dataBaseService.deleteLabWorksLowerThan(id, ownerLogin);
+        if (!removedIds.isEmpty()) {
+            collectionSyncManager.removeLower(id, ownerLogin);
+        }
+        return removedIds;
+    }
+
+    @Override
+    public void clear(String ownerLogin) {
+        if (writeCoordinator != null) {
+            writeCoordinator.execute(LabWorkMutation.clear(ownerLogin));
+        } else {
+            dataBaseService.clearCollection(ownerLogin);
+        }
+        collectionSyncManager.clear(ownerLogin);
+    }
+
+    /**
+     * Останавливает групповую фиксацию, дождавшись уже поставленных изменений.
+     */
+    @Override
+    public void close() {
+        if (writeCoordinator != null) {
+            writeCoordinator.close();
+        }
+    }
+}
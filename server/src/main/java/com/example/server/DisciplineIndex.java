@@ -0,0 +1,171 @@
+package com.example.server;
+
+/**
+ * DisciplineIndex - упорядоченный по названию дисциплины индекс с подсчётом ранга.
+ * <p>
+ * Хранит для каждого названия дисциплины количество элементов коллекции с этим названием
+ * в декартовом дереве (treap), где каждый узел знает суммарное количество элементов в своём поддереве.
+ * Добавление, удаление и подсчёт элементов с названием меньше заданного выполняются за O(log n).
+ * </p>
+ *
+ * <p>Индекс неизменяем: изменение возвращает новый индекс, который создаёт заново только узлы
+ * на пути от корня, остальные узлы общие со старым индексом. Поэтому индекс можно читать из любых потоков
+ * без блокировок.</p>
+ */
+final class DisciplineIndex {
+    static final DisciplineIndex EMPTY = new DisciplineIndex(null);
+
+    private final Node root;
+
+    private DisciplineIndex(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Возвращает индекс, в котором учтён ещё один элемент с дисциплиной {@code name}.
+     */
+    DisciplineIndex add(String name) {
+        return new DisciplineIndex(insert(root, name));
+    }
+
+    /**
+     * Возвращает индекс без одного элемента с дисциплиной {@code name}, если он был учтён.
+     */
+    DisciplineIndex remove(String name) {
+        Node updated = delete(root, name);
+        return updated == root ? this : new DisciplineIndex(updated);
+    }
+
+    /**
+     * Возвращает общее количество учтённых элементов.
+     */
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * Возвращает количество элементов, название дисциплины которых строго меньше {@code name}.
+     */
+    int countLess(String name) {
+        return rank(root, name, false);
+    }
+
+    /**
+     * Возвращает количество элементов, название дисциплины которых лежит в отрезке [{@code from}, {@code to}].
+     */
+    int countBetween(String from, String to) {
+        if (from.compareTo(to) > 0) {
+            return 0;
+        }
+        return rank(root, to, true) - rank(root, from, false);
+    }
+
+    private static int rank(Node node, String name, boolean inclusive) {
+        int result = 0;
+        while (node != null) {
+            int cmp = name.compareTo(node.name);
+            if (cmp < 0 || (cmp == 0 && !inclusive)) {
+                node = node.left;
+            } else {
+                result += size(node.left) + node.count;
+                if (cmp == 0) {
+                    break;
+                }
+                node = node.right;
+            }
+        }
+        return result;
+    }
+
+    private static Node insert(Node node, String name) {
+        if (node == null) {
+            return new Node(name, 1, priority(name), null, null);
+        }
+        int cmp = name.compareTo(node.name);
+        if (cmp == 0) {
+            return node.with(node.count + 1, node.left, node.right);
+        }
+        if (cmp < 0) {
+            Node left = insert(node.left, name);
+            if (left.priority > node.priority) {
+                return left.with(left.count, left.left, node.with(node.count, left.right, node.right));
+            }
+            return node.with(node.count, left, node.right);
+        }
+        Node right = insert(node.right, name);
+        if (right.priority > node.priority) {
+            return right.with(right.count, node.with(node.count, node.left, right.left), right.right);
+        }
+        return node.with(node.count, node.left, right);
+    }
+
+    private static Node delete(Node node, String name) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = name.compareTo(node.name);
+        if (cmp < 0) {
+            Node left = delete(node.left, name);
+            return left == node.left ? node : node.with(node.count, left, node.right);
+        }
+        if (cmp > 0) {
+            Node right = delete(node.right, name);
+            return right == node.right ? node : node.with(node.count, node.left, right);
+        }
+        if (node.count > 1) {
+            return node.with(node.count - 1, node.left, node.right);
+        }
+        return merge(node.left, node.right);
+    }
+
+    /**
+     * Сливает два дерева, все ключи первого из которых меньше ключей второго.
+     */
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            return left.with(left.count, left.left, merge(left.right, right));
+        }
+        return right.with(right.count, merge(left, right.left), right.right);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Приоритет узла - перемешанный хэш названия, чтобы дерево было сбалансированным в среднем
+     * и не зависело от порядка добавления.
+     */
+    private static int priority(String name) {
+        int h = name.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Node {
+        final String name;
+        final int count;
+        final int size;
+        final int priority;
+        final Node left;
+        final Node right;
+
+        Node(String name, int count, int priority, Node left, Node right) {
+            this.name = name;
+            this.count = count;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = count + DisciplineIndex.size(left) + DisciplineIndex.size(right);
+        }
+
+        Node with(int count, Node left, Node right) {
+            return new Node(name, count, priority, left, right);
+        }
+    }
+}
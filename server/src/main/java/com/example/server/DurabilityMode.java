@@ -0,0 +1,33 @@
+package com.example.server;
+
+import java.util.Locale;
+
+/**
+ * Момент, после которого изменение коллекции считается сохранённым и клиент получает ответ.
+ * <p>
+ * Выбирается переменной окружения {@code DURABILITY}: {@code direct} (по умолчанию) или {@code wal}.
+ * </p>
+ */
+public enum DurabilityMode {
+    /**
+     * После записи в БД: {@link DirectCollectionWriter}.
+     */
+    DIRECT,
+
+    /**
+     * После записи в локальный журнал {@link WriteAheadLog}, в БД изменения записываются в фоне:
+     * {@link WriteBehindCollectionWriter}.
+     */
+    WAL;
+
+    /**
+     * Разбирает имя режима без учёта регистра.
+     *
+     * @param name имя режима
+     * @return режим
+     * @throws IllegalArgumentException если режим неизвестен
+     */
+    public static DurabilityMode parse(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.server;
+
+import com.example.server.protocol.Frame;
+import com.example.server.protocol.FrameDecoder;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+/**
+ * Состояние одного неблокирующего подключения.
+ * <p>
+ * Из потока ввода-вывода накапливает входящие байты, собирает из них целые кадры-запросы
+ * ({@link Frame}) и передаёт их в рабочий пул. Запросы одного подключения выполняются строго по очереди,
+ * ответы складываются в очередь на запись и отправляются потоком ввода-вывода.
+ * </p>
+ *
+ * <p>Клиент может отправлять запросы, не дожидаясь ответов. Если невыполненных запросов накопилось
+ * больше {@link #MAX_IN_FLIGHT}, чтение из сокета приостанавливается до разгрузки очереди.</p>
+ *
+ * <p>Если клиент читает медленнее, чем сервер отвечает, и в очереди на запись больше
+ * {@link #MAX_QUEUED_BYTES} байт, рабочий поток ждёт её разгрузки перед отправкой следующего кадра,
+ * поэтому длинный ответ частями не копится в памяти целиком. Ожидание ограничено
+ * {@link #SEND_TIMEOUT_MILLIS}: клиент, переставший читать ответы, отключается и не занимает
+ * рабочий поток пула.</p>
+ *
+ * @see NioServer
+ */
+class NioConnection {
+    /**
+     * Максимальное число принятых, но ещё не выполненных запросов одного подключения.
+     */
+    static final int MAX_IN_FLIGHT = 1024;
+
+    /**
+     * Наибольший объём неотправленных ответов одного подключения, после которого отправка ждёт.
+     */
+    static final int MAX_QUEUED_BYTES = 1024 * 1024;
+
+    /**
+     * Наибольшее время ожидания места в очереди на запись, после которого подключение закрывается.
+     */
+    static final long SEND_TIMEOUT_MILLIS = 10_000;
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final NioServer.IoLoop loop;
+    private final Executor workers;
+    private final ClientHandler handler;
+    private final SocketAddress remoteAddress;
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+    private final FrameDecoder decoder = new FrameDecoder();
+
+    private final Queue<Frame> requests = new ArrayDeque<>();
+    private boolean processing = false;
+    private volatile boolean readPaused = false;
+
+    private final Queue<ByteBuffer> writeQueue = new ArrayDeque<>();
+    private long queuedBytes = 0;
+    private volatile boolean closed = false;
+
+    NioConnection(SocketChannel channel, SelectionKey key, NioServer.IoLoop loop, Executor workers,
+                  ClientHandler handler) throws IOException {
+        this.channel = channel;
+        this.key = key;
+        this.loop = loop;
+        this.workers = workers;
+        this.handler = handler;
+        this.remoteAddress = channel.getRemoteAddress();
+    }
+
+    SocketAddress remoteAddress() {
+        return remoteAddress;
+    }
+
+    /**
+     * Читает доступные байты и передаёт каждый собранный кадр на выполнение.
+     * Вызывается только из потока ввода-вывода.
+     */
+    void onReadable() throws IOException {
+        int read = 0;
+        while (!readPaused && (read = channel.read(readBuffer)) > 0) {
+            readBuffer.flip();
+            decoder.decode(readBuffer, this::submit);
+            readBuffer.clear();
+        }
+        if (read < 0) {
+            close();
+        }
+    }
+
+    /**
+     * Дописывает накопленные ответы в канал. Вызывается только из потока ввода-вывода.
+     */
+    void onWritable() throws IOException {
+        synchronized (writeQueue) {
+            ByteBuffer buffer;
+            while ((buffer = writeQueue.peek()) != null) {
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    return;
+                }
+                writeQueue.poll();
+                queuedBytes -= buffer.capacity();
+                writeQueue.notifyAll();
+            }
+        }
+        updateInterest();
+    }
+
+    /**
+     * Пересчитывает интересующие события: чтение, если оно не приостановлено,
+     * и запись, если есть неотправленные ответы. Вызывается только из потока ввода-вывода.
+     */
+    void updateInterest() {
+        if (!key.isValid()) {
+            return;
+        }
+        int ops = readPaused ? 0 : SelectionKey.OP_READ;
+        synchronized (writeQueue) {
+            if (!writeQueue.isEmpty()) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+        }
+        key.interestOps(ops);
+    }
+
+    /**
+     * Ставит кадр в очередь на отправку, ожидая, пока в очереди не освободится место.
+     * Вызывается из рабочих потоков, но не из потока ввода-вывода.
+     * <p>Если место не освободилось за {@link #SEND_TIMEOUT_MILLIS}, подключение закрывается.</p>
+     *
+     * @throws IOException если подключение закрыто, клиент не читает ответы или ожидание прервано
+     */
+    void send(Frame frame) throws IOException {
+        byte[] data = frame.encode();
+        boolean timedOut = false;
+        synchronized (writeQueue) {
+            long deadline = System.nanoTime() + SEND_TIMEOUT_MILLIS * 1_000_000;
+            // кадр больше предела отправляется, когда очередь пуста
+            while (!closed && queuedBytes > 0 && queuedBytes + data.length > MAX_QUEUED_BYTES) {
+                long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+                if (remainingMillis <= 0) {
+                    timedOut = true;
+                    break;
+                }
+                try {
+                    writeQueue.wait(remainingMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting to write");
+                }
+            }
+            if (!timedOut && !closed) {
+                writeQueue.add(ByteBuffer.wrap(data));
+                queuedBytes += data.length;
+            }
+        }
+        if (timedOut) {
+            System.err.println("Client " + remoteAddress + " is not reading responses");
+            close();
+            throw new IOException("Client is not reading responses");
+        }
+        if (closed) {
+            throw new IOException("Connection closed");
+        }
+        loop.requestInterestUpdate(this);
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        synchronized (writeQueue) {
+            writeQueue.notifyAll();
+        }
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing resources for client: " + e.getMessage());
+        }
+        System.out.println("Client disconnected: " + remoteAddress);
+    }
+
+    private void submit(Frame frame) {
+        synchronized (requests) {
+            requests.add(frame);
+            if (requests.size() >= MAX_IN_FLIGHT) {
+                readPaused = true;
+                updateInterest();
+            }
+            if (processing) {
+                return;
+            }
+            processing = true;
+        }
+        workers.execute(this::drainRequests);
+    }
+
+    /**
+     * Выполняет накопленные запросы по порядку, пока очередь не опустеет.
+     */
+    private void drainRequests() {
+        while (true) {
+            Frame frame;
+            synchronized (requests) {
+                frame = requests.poll();
+                if (frame == null) {
+                    processing = false;
+                    return;
+                }
+                if (readPaused && requests.size() < MAX_IN_FLIGHT / 2) {
+                    readPaused = false;
+                    loop.requestInterestUpdate(this);
+                }
+            }
+            if (closed) {
+                continue;
+            }
+            System.out.println("Received from client (" + remoteAddress + "): " + handler.describe(frame));
+            try {
+                handler.processFrame(frame, this::send);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("IOException for " + remoteAddress + ": " + e.getMessage());
+                close();
+            }
+        }
+    }
+}
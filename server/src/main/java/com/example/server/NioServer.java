@@ -0,0 +1,204 @@
+package com.example.server;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Неблокирующий TCP-сервер на основе {@link Selector}.
+ * <p>
+ * Приём подключений выполняется в отдельном потоке, после чего каждый {@link SocketChannel}
+ * закрепляется за одним из нескольких потоков ввода-вывода (по кругу). Потоки ввода-вывода
+ * только читают и пишут байты; целиком прочитанные запросы передаются в пул рабочих потоков,
+ * где выполняются командами {@link ClientHandler}.
+ * </p>
+ *
+ * <p>Благодаря этому тысячи простаивающих клиентов не занимают рабочие потоки.</p>
+ *
+ * @see NioConnection — состояние одного подключения
+ */
+public class NioServer implements ServerTransport {
+    private static final Logger logger = LogManager.getLogger();
+
+    private final int port;
+    private final IoLoop[] loops;
+    private final ExecutorService workers;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private volatile ServerSocketChannel serverChannel;
+    private volatile boolean running = true;
+
+    /**
+     * @param port          порт для прослушивания
+     * @param ioThreads     количество потоков ввода-вывода
+     * @param workerThreads количество рабочих потоков, выполняющих команды
+     * @throws IOException если не удалось открыть селекторы
+     */
+    public NioServer(int port, int ioThreads, int workerThreads) throws IOException {
+        this.port = port;
+        this.workers = Executors.newFixedThreadPool(workerThreads);
+        this.loops = new IoLoop[ioThreads];
+        for (int i = 0; i < ioThreads; i++) {
+            loops[i] = new IoLoop(i);
+        }
+    }
+
+    /**
+     * Запускает потоки ввода-вывода и принимает подключения в текущем потоке до закрытия сервера.
+     */
+    @Override
+    public void run() {
+        for (IoLoop loop : loops) {
+            loop.start();
+        }
+
+        try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+            serverChannel = channel;
+            channel.bind(new InetSocketAddress(port));
+            System.out.println("Server started. Waiting for clients...");
+
+            while (running) {
+                SocketChannel client = channel.accept();
+                client.configureBlocking(false);
+                client.socket().setTcpNoDelay(true);
+                System.out.println("Client connected: " + client.getRemoteAddress());
+                loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)].register(client);
+            }
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Server exception: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Останавливает приём подключений, потоки ввода-вывода и рабочий пул.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            ServerSocketChannel channel = serverChannel;
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Не удалось закрыть серверный канал: {}", e.getMessage());
+        }
+        for (IoLoop loop : loops) {
+            loop.shutdown();
+        }
+        workers.shutdown();
+    }
+
+    /**
+     * Поток ввода-вывода со своим селектором.
+     * <p>
+     * Регистрация каналов и запросы на запись приходят из других потоков через очереди,
+     * а сам селектор трогается только из этого потока.
+     * </p>
+     */
+    final class IoLoop extends Thread {
+        private final Selector selector;
+        private final Queue<SocketChannel> registrations = new ConcurrentLinkedQueue<>();
+        private final Queue<NioConnection> pendingInterest = new ConcurrentLinkedQueue<>();
+
+        IoLoop(int index) throws IOException {
+            super("nio-io-" + index);
+            setDaemon(true);
+            this.selector = Selector.open();
+        }
+
+        void register(SocketChannel channel) {
+            registrations.add(channel);
+            selector.wakeup();
+        }
+
+        /**
+         * Просит поток ввода-вывода пересчитать интересующие подключение события
+         * (появились данные для записи или можно снова читать запросы).
+         */
+        void requestInterestUpdate(NioConnection connection) {
+            pendingInterest.add(connection);
+            selector.wakeup();
+        }
+
+        void shutdown() {
+            interrupt();
+            try {
+                selector.close();
+            } catch (IOException e) {
+                logger.warn("Не удалось закрыть селектор: {}", e.getMessage());
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running && !isInterrupted()) {
+                    selector.select();
+                    acceptRegistrations();
+                    updateInterests();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        NioConnection connection = (NioConnection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                connection.onReadable();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.onWritable();
+                            }
+                        } catch (IOException e) {
+                            System.err.println("IOException for " + connection.remoteAddress() + ": " + e.getMessage());
+                            connection.close();
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (running) {
+                    logger.error("Поток ввода-вывода {} остановлен: {}", getName(), e.getMessage());
+                }
+            }
+        }
+
+        private void acceptRegistrations() {
+            SocketChannel channel;
+            while ((channel = registrations.poll()) != null) {
+                try {
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                    key.attach(new NioConnection(channel, key, this, workers, new ClientHandler()));
+                } catch (IOException e) {
+                    System.err.println("Не удалось зарегистрировать клиента: " + e.getMessage());
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+
+        private void updateInterests() {
+            NioConnection connection;
+            while ((connection = pendingInterest.poll()) != null) {
+                connection.updateInterest();
+            }
+        }
+    }
+}
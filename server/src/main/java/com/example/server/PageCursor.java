@@ -0,0 +1,48 @@
+package com.example.server;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * PageCursor - курсор постраничного чтения коллекции.
+ * <p>
+ * Курсор хранит ID последнего элемента страницы: следующая страница начинается с первого элемента
+ * с большим ID, поэтому её начало находится по индексу за O(log n), а добавление и удаление элементов
+ * между запросами страниц не сдвигает и не повторяет уже выданные элементы.
+ * </p>
+ *
+ * <p>Для клиента курсор непрозрачен: это версия формата и ID в base64 без дополнения.</p>
+ */
+final class PageCursor {
+    private static final byte VERSION = 1;
+    private static final int LENGTH = 1 + Integer.BYTES;
+
+    private PageCursor() {
+    }
+
+    /**
+     * Возвращает курсор, указывающий на элемент с ID {@code lastId}.
+     */
+    static String encode(int lastId) {
+        byte[] bytes = ByteBuffer.allocate(LENGTH).put(VERSION).putInt(lastId).array();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Возвращает ID элемента, на который указывает курсор.
+     *
+     * @throws IllegalArgumentException если курсор не выдан этим сервером
+     */
+    static int decode(String cursor) throws IllegalArgumentException {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+        }
+        if (bytes.length != LENGTH || bytes[0] != VERSION) {
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+        }
+        return ByteBuffer.wrap(bytes, 1, Integer.BYTES).getInt();
+    }
+}
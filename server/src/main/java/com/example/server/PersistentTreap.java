@@ -0,0 +1,279 @@
+package com.example.server;
+
+import java.util.*;
+
+/**
+ * PersistentTreap - неизменяемый упорядоченный словарь на декартовом дереве.
+ * <p>
+ * Любое изменение возвращает новый словарь, а старый остаётся прежним. Новый словарь создаёт
+ * заново только узлы на пути от корня к изменённому ключу (O(log n) в среднем), остальные узлы
+ * общие с исходным словарём. Поэтому словарь можно опубликовать и читать из любых потоков без блокировок.
+ * </p>
+ *
+ * <p>Приоритет узла вычисляется из хэша ключа, поэтому форма дерева зависит только от набора ключей.</p>
+ *
+ * @param <K> тип ключа
+ * @param <V> тип значения
+ */
+final class PersistentTreap<K, V> {
+    private final Comparator<? super K> comparator;
+    private final Node<K, V> root;
+
+    private PersistentTreap(Comparator<? super K> comparator, Node<K, V> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    /**
+     * Возвращает пустой словарь с естественным порядком ключей.
+     */
+    static <K extends Comparable<? super K>, V> PersistentTreap<K, V> empty() {
+        return new PersistentTreap<>(Comparator.naturalOrder(), null);
+    }
+
+    /**
+     * Возвращает пустой словарь с заданным порядком ключей.
+     */
+    static <K, V> PersistentTreap<K, V> empty(Comparator<? super K> comparator) {
+        return new PersistentTreap<>(comparator, null);
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * @return значение по ключу или {@code null}, если ключа нет
+     */
+    V get(K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int cmp = comparator.compare(key, node.key);
+            if (cmp == 0) {
+                return node.value;
+            }
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * @return значение с наименьшим ключом или {@code null}, если словарь пуст
+     */
+    V first() {
+        Node<K, V> node = root;
+        if (node == null) {
+            return null;
+        }
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node.value;
+    }
+
+    /**
+     * Возвращает словарь, в котором по ключу {@code key} лежит {@code value}.
+     */
+    PersistentTreap<K, V> put(K key, V value) {
+        return new PersistentTreap<>(comparator, insert(root, key, value, priority(key)));
+    }
+
+    /**
+     * Возвращает словарь без ключа {@code key} (или этот же словарь, если ключа не было).
+     */
+    PersistentTreap<K, V> remove(K key) {
+        Node<K, V> updated = delete(root, key);
+        return updated == root ? this : new PersistentTreap<>(comparator, updated);
+    }
+
+    /**
+     * Возвращает словарь из ключей, строго меньших {@code key}, за O(log n).
+     */
+    PersistentTreap<K, V> headBelow(K key) {
+        return new PersistentTreap<>(comparator, below(root, key));
+    }
+
+    /**
+     * Возвращает словарь из ключей, не меньших {@code key}, за O(log n).
+     */
+    PersistentTreap<K, V> tailFrom(K key) {
+        return new PersistentTreap<>(comparator, from(root, key));
+    }
+
+    /**
+     * Возвращает значения в порядке возрастания ключей. Представление не копирует данные.
+     */
+    Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new InOrder<>(root, null, null, comparator);
+            }
+
+            @Override
+            public int size() {
+                return PersistentTreap.this.size();
+            }
+        };
+    }
+
+    /**
+     * Возвращает значения с ключами из отрезка [{@code from}, {@code to}] в порядке возрастания ключей.
+     * Граница {@code null} означает отсутствие ограничения с этой стороны.
+     */
+    Iterable<V> valuesBetween(K from, K to) {
+        return () -> new InOrder<>(root, from, to, comparator);
+    }
+
+    private Node<K, V> insert(Node<K, V> node, K key, V value, int priority) {
+        if (node == null) {
+            return new Node<>(key, value, priority, null, null);
+        }
+        int cmp = comparator.compare(key, node.key);
+        if (cmp == 0) {
+            return new Node<>(key, value, node.priority, node.left, node.right);
+        }
+        if (cmp < 0) {
+            Node<K, V> left = insert(node.left, key, value, priority);
+            if (left.priority > node.priority) {
+                return left.with(left.left, node.with(left.right, node.right));
+            }
+            return node.with(left, node.right);
+        }
+        Node<K, V> right = insert(node.right, key, value, priority);
+        if (right.priority > node.priority) {
+            return right.with(node.with(node.left, right.left), right.right);
+        }
+        return node.with(node.left, right);
+    }
+
+    private Node<K, V> delete(Node<K, V> node, K key) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = comparator.compare(key, node.key);
+        if (cmp < 0) {
+            Node<K, V> left = delete(node.left, key);
+            return left == node.left ? node : node.with(left, node.right);
+        }
+        if (cmp > 0) {
+            Node<K, V> right = delete(node.right, key);
+            return right == node.right ? node : node.with(node.left, right);
+        }
+        return merge(node.left, node.right);
+    }
+
+    private Node<K, V> below(Node<K, V> node, K key) {
+        if (node == null) {
+            return null;
+        }
+        if (comparator.compare(node.key, key) >= 0) {
+            return below(node.left, key);
+        }
+        Node<K, V> right = below(node.right, key);
+        return right == node.right ? node : node.with(node.left, right);
+    }
+
+    private Node<K, V> from(Node<K, V> node, K key) {
+        if (node == null) {
+            return null;
+        }
+        if (comparator.compare(node.key, key) < 0) {
+            return from(node.right, key);
+        }
+        Node<K, V> left = from(node.left, key);
+        return left == node.left ? node : node.with(left, node.right);
+    }
+
+    /**
+     * Сливает два дерева, все ключи первого из которых меньше ключей второго.
+     */
+    private static <K, V> Node<K, V> merge(Node<K, V> left, Node<K, V> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            return left.with(left.left, merge(left.right, right));
+        }
+        return right.with(merge(left, right.left), right.right);
+    }
+
+    private static int size(Node<?, ?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int priority(Object key) {
+        int h = Objects.hashCode(key) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final int priority;
+        final int size;
+        final Node<K, V> left;
+        final Node<K, V> right;
+
+        Node(K key, V value, int priority, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + PersistentTreap.size(left) + PersistentTreap.size(right);
+        }
+
+        Node<K, V> with(Node<K, V> left, Node<K, V> right) {
+            return new Node<>(key, value, priority, left, right);
+        }
+    }
+
+    /**
+     * Обход дерева по возрастанию ключей с необязательными границами.
+     */
+    private static final class InOrder<K, V> implements Iterator<V> {
+        private final Deque<Node<K, V>> stack = new ArrayDeque<>();
+        private final K to;
+        private final Comparator<? super K> comparator;
+
+        InOrder(Node<K, V> root, K from, K to, Comparator<? super K> comparator) {
+            this.to = to;
+            this.comparator = comparator;
+            Node<K, V> node = root;
+            while (node != null) {
+                if (from == null || comparator.compare(node.key, from) >= 0) {
+                    stack.push(node);
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            Node<K, V> next = stack.peek();
+            return next != null && (to == null || comparator.compare(next.key, to) <= 0);
+        }
+
+        @Override
+        public V next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node<K, V> node = stack.pop();
+            for (Node<K, V> child = node.right; child != null; child = child.left) {
+                stack.push(child);
+            }
+            return node.value;
+        }
+    }
+}
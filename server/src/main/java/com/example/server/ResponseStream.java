@@ -0,0 +1,76 @@
+package com.example.server;
+
+import com.example.server.models.Response;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * ResponseStream - построчная сборка длинного ответа с отправкой его частями.
+ * <p>
+ * Строки накапливаются, пока их не наберётся примерно на {@code chunkChars} символов, после чего
+ * накопленное отправляется клиенту кадром {@link com.example.server.protocol.FrameType#RESPONSE_CHUNK}.
+ * Остаток возвращает {@link #finish()} для завершающего ответа. Так на один ответ в памяти держится
+ * не больше одной части, а клиент выводит результат по мере получения.
+ * </p>
+ *
+ * <p>Если подключение не принимает части, все строки собираются в один ответ, как раньше.</p>
+ */
+class ResponseStream {
+    /**
+     * Получатель готовых частей ответа.
+     */
+    @FunctionalInterface
+    interface ChunkSink {
+        void send(Response chunk) throws IOException;
+    }
+
+    private final ChunkSink sink;
+    private final int chunkChars;
+    private final StringBuilder buffer = new StringBuilder();
+    private int chunks;
+
+    /**
+     * @param sink       получатель частей или {@code null}, если подключение их не принимает
+     * @param chunkChars примерный размер части в символах
+     */
+    ResponseStream(ChunkSink sink, int chunkChars) {
+        this.sink = sink;
+        this.chunkChars = Math.max(1, chunkChars);
+    }
+
+    /**
+     * Добавляет строку ответа и отправляет накопленную часть, если она набрана.
+     *
+     * @throws UncheckedIOException если часть не удалось отправить
+     */
+    void append(String line) {
+        if (!buffer.isEmpty()) {
+            buffer.append('\n');
+        }
+        buffer.append(line);
+        if (sink != null && buffer.length() >= chunkChars) {
+            try {
+                sink.send(new Response(buffer.toString()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buffer.setLength(0);
+            chunks++;
+        }
+    }
+
+    /**
+     * Возвращает завершающий ответ с неотправленными строками.
+     */
+    Response finish() {
+        return new Response(buffer.toString());
+    }
+
+    /**
+     * Возвращает число уже отправленных частей.
+     */
+    int chunks() {
+        return chunks;
+    }
+}
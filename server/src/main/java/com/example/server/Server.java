@@ -6,24 +6,24 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
 import java.sql.SQLException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 /**
  * Основной класс серверного приложения.
  * <p>
- * Запускает TCP-сервер, ожидающий подключения клиентов. Для каждого клиента создаётся отдельный поток,
- * обрабатывающий команды с помощью {@link ClientHandler}.
+ * Запускает TCP-сервер, ожидающий подключения клиентов. Способ обслуживания подключений задаётся
+ * {@link ServerMode}: по умолчанию это неблокирующий {@link NioServer}, где подключения обслуживаются
+ * несколькими потоками ввода-вывода, а команды выполняются в пуле рабочих потоков с помощью
+ * {@link ClientHandler}. В режимах {@code pool} и {@code virtual} каждое подключение обслуживается
+ * блокирующим {@link ClientHandler#run()} на платформенном или виртуальном потоке.
  * </p>
  *
  * <p>Сервер использует:
  * <ul>
  *     <li>{@link DataBaseConnector} для подключения к базе данных через SSH</li>
  *     <li>{@link ServiceLocator} для доступа к сервисам (база данных, коллекция и т.д.)</li>
- *     <li>{@link ExecutorService} для ограничения числа одновременно обслуживаемых клиентов</li>
+ *     <li>{@link ServerTransport} для обслуживания одновременных подключений</li>
  * </ul>
  * </p>
  *
@@ -64,7 +64,19 @@ public class Server {
     private static final int PORT = 8088;
 
     /**
-     * Максимальное количество потоков (одновременно обслуживаемых клиентов).
+     * Режим обслуживания подключений.
+     * По умолчанию берется из переменной окружения "SERVER_MODE" ({@code nio}, {@code pool} или {@code virtual}).
+     */
+    static ServerMode serverMode = ServerMode.parse(System.getenv().getOrDefault("SERVER_MODE", "nio"));
+
+    /**
+     * Количество потоков ввода-вывода, обслуживающих сокеты в режиме {@code nio}.
+     */
+    private static final int IO_THREADS = 2;
+
+    /**
+     * Количество рабочих потоков, одновременно выполняющих команды клиентов.
+     * <p>В режиме {@code pool} это также максимальное число одновременно обслуживаемых клиентов.</p>
      */
     private static final int MAX_THREADS = 4;
 
@@ -77,6 +89,7 @@ public class Server {
      * Точка входа в серверное приложение.
      * <p>
      * Выполняет инициализацию, запуск сервера и ожидание клиентских подключений.
+     * Коллекция загружается в фоне, когда порт уже открыт.
      * </p>
      *
      * @param args аргументы командной строки (не используются)
@@ -89,32 +102,43 @@ public class Server {
             return;
         }
 
-        ExecutorService executorService = Executors.newFixedThreadPool(MAX_THREADS);
-        System.out.println("Server starting on port: " + PORT);
+        System.out.println("Server starting on port: " + PORT + " (mode: " + serverMode + ")");
 
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
-            System.out.println("Server started. Waiting for clients...");
-            while (true) {
-                Socket clientSocket = serverSocket.accept();
-                System.out.println("Client connected: " + clientSocket.getInetAddress());
-                executorService.submit(new ClientHandler(clientSocket));
-            }
+        try (ServerTransport server = openTransport(serverMode, PORT)) {
+            ServiceLocator.startLoading();
+            server.run();
         } catch (IOException e) {
             System.err.println("Server exception: " + e.getMessage());
             e.printStackTrace();
         } finally {
-            executorService.shutdown();
             dispose();
         }
     }
 
+    /**
+     * Создаёт транспорт для указанного режима обслуживания подключений.
+     *
+     * @param mode режим обслуживания
+     * @param port порт для прослушивания
+     * @return транспорт, готовый к запуску через {@link ServerTransport#run()}
+     * @throws IOException если не удалось подготовить неблокирующий транспорт
+     */
+    public static ServerTransport openTransport(ServerMode mode, int port) throws IOException {
+        return switch (mode) {
+            case NIO -> new NioServer(port, IO_THREADS, MAX_THREADS);
+            case POOL -> new BlockingServer(port, Executors.newFixedThreadPool(MAX_THREADS));
+            case VIRTUAL -> new BlockingServer(port, Executors.newVirtualThreadPerTaskExecutor());
+        };
+    }
+
     /**
      * Инициализирует подключение к базе данных и регистрирует сервисы через {@link ServiceLocator}.
      *
      * @throws JSchException если произошла ошибка при подключении через SSH
      * @throws SQLException если произошла ошибка при подключении к БД
+     * @throws IOException если не удалось открыть журнал изменений
      */
-    private static void init() throws JSchException, SQLException {
+    private static void init() throws JSchException, SQLException, IOException {
         dataBaseConnector = new DataBaseConnector(dbUser, dbPassword, sshUser, sshPassword);
         ServiceLocator.init(dataBaseConnector);
     }
@@ -122,10 +146,25 @@ public class Server {
     /**
      * Освобождает ресурсы перед завершением работы сервера.
      * <p>
-     * Закрывает соединение с базой данных.
+     * Дописывает в БД отложенные изменения, записывает снимок коллекции, выводит статистику групповой
+     * фиксации, кэша учётных данных и пула соединений, закрывает соединения с базой данных.
      * </p>
      */
     public static synchronized void dispose() {
+        if (ServiceLocator.collectionWriter != null) {
+            ServiceLocator.collectionWriter.close();
+        }
+        ServiceLocator.saveSnapshot();
+        if (ServiceLocator.writeCoordinator != null) {
+            logger.info("Статистика групповой фиксации: {}", ServiceLocator.writeCoordinator);
+        }
+        if (ServiceLocator.userDataBaseService != null) {
+            logger.info("Статистика кэша учётных данных: {}", ServiceLocator.userDataBaseService.getCredentialCache());
+        }
+        if (ServiceLocator.connectionPool != null) {
+            logger.info("Статистика пула соединений: {}", ServiceLocator.connectionPool);
+            ServiceLocator.connectionPool.close();
+        }
         dataBaseConnector.close();
     }
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package com.example.server;
+
+import java.util.Locale;
+
+/**
+ * Режим обслуживания клиентских подключений.
+ * <p>
+ * Выбирается переменной окружения {@code SERVER_MODE}: {@code nio} (по умолчанию),
+ * {@code pool} или {@code virtual}.
+ * </p>
+ */
+public enum ServerMode {
+    /**
+     * Неблокирующий {@link NioServer}: несколько потоков ввода-вывода и пул рабочих потоков.
+     */
+    NIO,
+
+    /**
+     * Блокирующий {@link ClientHandler} на фиксированном пуле платформенных потоков.
+     * Одновременно обслуживается не больше клиентов, чем потоков в пуле.
+     */
+    POOL,
+
+    /**
+     * Блокирующий {@link ClientHandler}, по одному виртуальному потоку на подключение.
+     */
+    VIRTUAL;
+
+    /**
+     * Разбирает имя режима без учёта регистра.
+     *
+     * @param name имя режима
+     * @return режим
+     * @throws IllegalArgumentException если режим неизвестен
+     */
+    public static ServerMode parse(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
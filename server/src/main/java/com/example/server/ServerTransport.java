@@ -0,0 +1,19 @@
+package com.example.server;
+
+/**
+ * Транспорт, принимающий клиентские подключения.
+ * <p>
+ * {@link #run()} принимает подключения в текущем потоке до вызова {@link #close()}.
+ * </p>
+ *
+ * @see NioServer
+ * @see BlockingServer
+ * @see ServerMode
+ */
+public interface ServerTransport extends Runnable, AutoCloseable {
+    /**
+     * Останавливает приём подключений и освобождает потоки транспорта.
+     */
+    @Override
+    void close();
+}
@@ -1,14 +1,23 @@
 package com.example.server;
 
 import com.example.server.database.CollectionDataBaseService;
+import com.example.server.database.ConnectionPool;
+import com.example.server.database.CredentialCache;
 import com.example.server.database.DataBaseConnector;
+import com.example.server.database.IdAllocator;
 import com.example.server.database.UserDataBaseService;
-import com.example.server.models.LabWork;
+import com.example.server.database.WriteCoordinator;
 import com.jcraft.jsch.JSchException;
 
-import java.sql.Connection;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Локатор сервисов, предоставляющий доступ к общим ресурсам приложения.
@@ -16,17 +25,29 @@ import java.util.List;
  * Этот класс реализует паттерн "Service Locator" и используется для централизованного получения
  * доступа к следующим компонентам:
  * <ul>
+ *     <li>{@link ConnectionPool} — общий пул соединений с БД для сервисов ниже</li>
  *     <li>{@link UserDataBaseService} — для работы с пользователями</li>
  *     <li>{@link CollectionDataBaseService} — для работы с коллекцией лабораторных работ через БД</li>
  *     <li>{@link CollectionSyncManager} — для управления коллекцией в памяти с поддержкой синхронизации</li>
+ *     <li>{@link SessionManager} — для проверки токенов сессий без обращения к БД</li>
+ *     <li>{@link CollectionLoader} — для фоновой загрузки коллекции и проверки её готовности</li>
+ *     <li>{@link SnapshotStore} — для локального снимка коллекции, ускоряющего перезапуск</li>
+ *     <li>{@link CollectionWriter} — для записи изменений коллекции в память и БД</li>
+ *     <li>{@link WriteCoordinator} — для групповой фиксации изменений разных клиентов</li>
  * </ul>
  * </p>
  *
- * <p>Инициализация выполняется один раз при запуске сервера.</p>
+ * <p>Инициализация выполняется один раз при запуске сервера. Коллекция загружается в фоне
+ * после {@link #startLoading()}, когда сервер уже принимает подключения.</p>
  *
  * @see ServiceLocator#init(DataBaseConnector) — точка инициализации всех сервисов
  */
 public class ServiceLocator {
+    /**
+     * Пул соединений с БД, общий для всех сервисов.
+     */
+    static ConnectionPool connectionPool;
+
     /**
      * Сервис для работы с данными пользователей (регистрация, аутентификация).
      */
@@ -42,29 +63,221 @@ public class ServiceLocator {
      */
     static CollectionSyncManager collectionSyncManager;
 
+    /**
+     * Таблица сессий авторизованных пользователей.
+     */
+    static SessionManager sessionManager;
+
+    /**
+     * Фоновая загрузка коллекции из БД.
+     */
+    static CollectionLoader collectionLoader;
+
+    /**
+     * Локальный снимок коллекции или {@code null}, если снимки отключены.
+     */
+    static SnapshotStore snapshotStore;
+
+    /**
+     * Запись изменений коллекции, выбранная {@link #durability}.
+     */
+    static CollectionWriter collectionWriter;
+
+    /**
+     * Групповая фиксация изменений в режиме {@code direct} или {@code null}, если она отключена.
+     */
+    static WriteCoordinator writeCoordinator;
+
+    /**
+     * Время бездействия в минутах, после которого сессия истекает.
+     * По умолчанию берется из переменной окружения "SESSION_TTL_MINUTES".
+     */
+    static long sessionTtlMinutes = Long.parseLong(System.getenv().getOrDefault("SESSION_TTL_MINUTES", "30"));
+
+    /**
+     * Максимальное количество пользователей в кэше учётных данных.
+     * По умолчанию берется из переменной окружения "CREDENTIAL_CACHE_SIZE".
+     */
+    static int credentialCacheSize = Integer.parseInt(System.getenv().getOrDefault("CREDENTIAL_CACHE_SIZE", "10000"));
+
+    /**
+     * Время жизни записи кэша учётных данных в секундах.
+     * По умолчанию берется из переменной окружения "CREDENTIAL_CACHE_TTL_SECONDS".
+     */
+    static long credentialCacheTtlSeconds = Long.parseLong(System.getenv().getOrDefault("CREDENTIAL_CACHE_TTL_SECONDS", "300"));
+
+    /**
+     * Число соединений с БД, открываемых при запуске.
+     * По умолчанию берется из переменной окружения "DB_POOL_MIN".
+     */
+    static int dbPoolMin = Integer.parseInt(System.getenv().getOrDefault("DB_POOL_MIN", "2"));
+
+    /**
+     * Максимальное число одновременно открытых соединений с БД.
+     * По умолчанию берется из переменной окружения "DB_POOL_MAX".
+     */
+    static int dbPoolMax = Integer.parseInt(System.getenv().getOrDefault("DB_POOL_MAX", "8"));
+
+    /**
+     * Максимальное время ожидания свободного соединения в миллисекундах.
+     * По умолчанию берется из переменной окружения "DB_POOL_TIMEOUT_MS".
+     */
+    static long dbPoolTimeoutMillis = Long.parseLong(System.getenv().getOrDefault("DB_POOL_TIMEOUT_MS", "5000"));
+
+    /**
+     * Максимальное число подготовленных запросов, кэшируемых на одно соединение с БД.
+     * По умолчанию берется из переменной окружения "DB_STATEMENT_CACHE_SIZE".
+     */
+    static int dbStatementCacheSize = Integer.parseInt(System.getenv().getOrDefault("DB_STATEMENT_CACHE_SIZE", "64"));
+
+    /**
+     * Загружать и сохранять всю коллекцию командой COPY вместо SELECT и пакетного INSERT.
+     * По умолчанию берется из переменной окружения "DB_BULK_COPY".
+     */
+    static boolean dbBulkCopy = Boolean.parseBoolean(System.getenv().getOrDefault("DB_BULK_COPY", "true"));
+
+    /**
+     * Число строк, получаемых курсором за одно обращение к БД при загрузке коллекции запросом SELECT.
+     * По умолчанию берется из переменной окружения "DB_FETCH_SIZE".
+     */
+    static int dbFetchSize = Integer.parseInt(System.getenv().getOrDefault("DB_FETCH_SIZE", "1000"));
+
+    /**
+     * Путь к файлу локального снимка коллекции. Пустая строка отключает снимки.
+     * По умолчанию берется из переменной окружения "SNAPSHOT_PATH".
+     */
+    static String snapshotPath = System.getenv().getOrDefault("SNAPSHOT_PATH", "labworks.snapshot");
+
+    /**
+     * Период записи снимка коллекции в секундах, 0 - только при завершении сервера.
+     * По умолчанию берется из переменной окружения "SNAPSHOT_INTERVAL_SECONDS".
+     */
+    static long snapshotIntervalSeconds = Long.parseLong(System.getenv().getOrDefault("SNAPSHOT_INTERVAL_SECONDS", "300"));
+
+    /**
+     * Момент, после которого изменение коллекции считается сохранённым.
+     * По умолчанию берется из переменной окружения "DURABILITY" ({@code direct} или {@code wal}).
+     */
+    static DurabilityMode durability = DurabilityMode.parse(System.getenv().getOrDefault("DURABILITY", "direct"));
+
+    /**
+     * Каталог журнала изменений в режиме {@code wal}.
+     * По умолчанию берется из переменной окружения "WAL_DIR".
+     */
+    static String walDir = System.getenv().getOrDefault("WAL_DIR", "wal");
+
+    /**
+     * Период записи изменений из журнала в БД в миллисекундах.
+     * По умолчанию берется из переменной окружения "WAL_FLUSH_INTERVAL_MS".
+     */
+    static long walFlushIntervalMillis = Long.parseLong(System.getenv().getOrDefault("WAL_FLUSH_INTERVAL_MS", "200"));
+
+    /**
+     * Число ID новых элементов, резервируемых в БД за одно обращение в режиме {@code wal}.
+     * По умолчанию берется из переменной окружения "WAL_ID_BLOCK_SIZE".
+     */
+    static int walIdBlockSize = Integer.parseInt(System.getenv().getOrDefault("WAL_ID_BLOCK_SIZE", "100"));
+
+    /**
+     * Наибольшее время в миллисекундах, которое изменение ждёт другие изменения для общей фиксации в БД.
+     * Чем больше окно, тем крупнее группы и тем дольше ответ на одиночное изменение.
+     * По умолчанию берется из переменной окружения "GROUP_COMMIT_WINDOW_MS".
+     */
+    static long groupCommitWindowMillis = Long.parseLong(System.getenv().getOrDefault("GROUP_COMMIT_WINDOW_MS", "2"));
+
+    /**
+     * Наибольшее число изменений в одной общей фиксации, 1 - групповая фиксация отключена.
+     * По умолчанию берется из переменной окружения "GROUP_COMMIT_MAX_BATCH".
+     */
+    static int groupCommitMaxBatch = Integer.parseInt(System.getenv().getOrDefault("GROUP_COMMIT_MAX_BATCH", "64"));
+
+    /**
+     * Кодеки, которые сервер соглашается использовать, если их предлагает клиент ({@code json}, {@code binary}).
+     * Подключения без согласования всегда используют {@code json}.
+     * По умолчанию берется из переменной окружения "CODECS".
+     */
+    static List<String> codecs = Arrays.stream(System.getenv().getOrDefault("CODECS", "binary,json").split(","))
+            .map(String::trim)
+            .toList();
+
+    /**
+     * Примерное число символов в одной части ответов {@code show} и {@code show_owner}.
+     * По умолчанию берется из переменной окружения "RESPONSE_CHUNK_CHARS".
+     */
+    static int responseChunkChars = Integer.parseInt(System.getenv().getOrDefault("RESPONSE_CHUNK_CHARS", "32768"));
+
     /**
      * Инициализирует все необходимые сервисы и загружает данные в память.
      * <p>
-     * Устанавливает соединение с БД, создаёт экземпляры сервисов и наполняет
-     * {@link CollectionSyncManager} данными из БД.
+     * Создаёт SSH-туннель и пул соединений с БД и экземпляры сервисов. Коллекция остаётся пустой
+     * до вызова {@link #startLoading()}. В режиме {@code wal} изменения, оставшиеся в журнале
+     * от прошлого запуска, записываются в БД до загрузки коллекции.
      * </p>
      *
      * @param connector объект-подключатель к базе данных через SSH и JDBC
      * @throws JSchException если произошла ошибка при настройке SSH-туннеля
      * @throws SQLException если произошла ошибка при подключении к БД или выполнении запросов
+     * @throws IOException если не удалось открыть журнал изменений
      */
-    static void init(DataBaseConnector connector) throws JSchException, SQLException {
-        Connection connection = connector.connect();
+    static void init(DataBaseConnector connector) throws JSchException, SQLException, IOException {
+        connector.connect();
+        connectionPool = new ConnectionPool(connector, dbPoolMin, dbPoolMax, Duration.ofMillis(dbPoolTimeoutMillis),
+                dbStatementCacheSize);
 
-        userDataBaseService = new UserDataBaseService(connection);
-        collectionDataBaseService = new CollectionDataBaseService(connection);
+        userDataBaseService = new UserDataBaseService(connectionPool,
+                new CredentialCache(credentialCacheSize, Duration.ofSeconds(credentialCacheTtlSeconds)));
+        collectionDataBaseService = new CollectionDataBaseService(connectionPool, dbBulkCopy, dbFetchSize);
 
         userDataBaseService.init();
         collectionDataBaseService.init();
 
+        sessionManager = new SessionManager(Duration.ofMinutes(sessionTtlMinutes));
+
         collectionSyncManager = new CollectionSyncManager();
-        List<LabWork> loaded = collectionDataBaseService.loadInMemory();
-        collectionSyncManager.replaceAll(loaded.stream()
-                .toList());
+        snapshotStore = snapshotPath.isEmpty() ? null : new SnapshotStore(Path.of(snapshotPath));
+        collectionLoader = new CollectionLoader(collectionDataBaseService, collectionSyncManager, snapshotStore);
+
+        collectionWriter = switch (durability) {
+            case DIRECT -> {
+                if (groupCommitMaxBatch > 1) {
+                    writeCoordinator = new WriteCoordinator(collectionDataBaseService,
+                            Duration.ofMillis(groupCommitWindowMillis), groupCommitMaxBatch);
+                }
+                yield new DirectCollectionWriter(collectionDataBaseService, collectionSyncManager, writeCoordinator);
+            }
+            case WAL -> {
+                WriteBehindCollectionWriter writer = new WriteBehindCollectionWriter(collectionSyncManager,
+                        collectionDataBaseService, new WriteAheadLog(Path.of(walDir)),
+                        new IdAllocator(connectionPool, walIdBlockSize), walFlushIntervalMillis);
+                writer.recover();
+                yield writer;
+            }
+        };
+    }
+
+    /**
+     * Запускает фоновую загрузку коллекции из БД, фоновую запись изменений и периодическую запись снимка.
+     */
+    static void startLoading() {
+        collectionLoader.start();
+        collectionWriter.start();
+        if (snapshotStore != null && snapshotIntervalSeconds > 0) {
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "snapshot-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(ServiceLocator::saveSnapshot,
+                    snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Записывает снимок коллекции, если снимки включены и коллекция загружена полностью.
+     */
+    static void saveSnapshot() {
+        if (snapshotStore != null && collectionLoader != null && collectionLoader.isComplete()) {
+            snapshotStore.save(collectionSyncManager.snapshot());
+        }
     }
 }
\ No newline at end of file
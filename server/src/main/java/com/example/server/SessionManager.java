@@ -0,0 +1,131 @@
+package com.example.server;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SessionManager - таблица сессий пользователей в памяти.
+ * <p>
+ * После успешного входа пользователь получает случайный токен сессии и передаёт его вместо
+ * логина и хэша пароля в каждой команде. Проверка токена не обращается к БД.
+ * </p>
+ *
+ * <p>Сессия истекает, если ею не пользовались дольше заданного времени, и может быть отозвана явно.</p>
+ */
+public class SessionManager {
+    private static final Logger logger = LogManager.getLogger();
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * @param ttl время бездействия, после которого сессия истекает
+     */
+    public SessionManager(Duration ttl) {
+        this.ttlNanos = ttl.toNanos();
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, ttl.toSeconds() / 2);
+        sweeper.scheduleAtFixedRate(this::removeExpired, period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Открывает новую сессию для пользователя.
+     *
+     * @param username логин пользователя, прошедшего проверку пароля
+     * @return токен сессии
+     */
+    public String open(String username) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(username, System.nanoTime() + ttlNanos));
+        logger.info("Открыта сессия пользователя {}", username);
+        return token;
+    }
+
+    /**
+     * Находит пользователя по токену и продлевает сессию.
+     *
+     * @param token токен сессии
+     * @return логин пользователя или {@code null}, если сессия не найдена, истекла или отозвана
+     */
+    public String resolve(String token) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (now - session.expiresAt > 0) {
+            sessions.remove(token, session);
+            return null;
+        }
+        session.expiresAt = now + ttlNanos;
+        return session.username;
+    }
+
+    /**
+     * Отзывает сессию.
+     *
+     * @param token токен сессии
+     */
+    public void revoke(String token) {
+        if (token == null) {
+            return;
+        }
+        Session session = sessions.remove(token);
+        if (session != null) {
+            logger.info("Закрыта сессия пользователя {}", session.username);
+        }
+    }
+
+    /**
+     * Отзывает все сессии пользователя.
+     *
+     * @param username логин пользователя
+     */
+    public void revokeAll(String username) {
+        sessions.values().removeIf(session -> session.username.equals(username));
+    }
+
+    /**
+     * Возвращает количество активных сессий.
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    private void removeExpired() {
+        long now = System.nanoTime();
+        sessions.values().removeIf(session -> now - session.expiresAt > 0);
+    }
+
+    private static final class Session {
+        final String username;
+        volatile long expiresAt;
+
+        Session(String username, long expiresAt) {
+            this.username = username;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.server;
+
+import com.example.server.database.RowVersionStamp;
+import com.example.server.models.Coordinates;
+import com.example.server.models.Difficulty;
+import com.example.server.models.Discipline;
+import com.example.server.models.LabWork;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * SnapshotStore - файл со снимком коллекции на локальном диске для быстрого перезапуска сервера.
+ * <p>
+ * Файл двоичный: заголовок (сигнатура, версия формата, наибольшая версия строки БД, число элементов),
+ * затем элементы подряд и в конце CRC32 всего предыдущего содержимого. Строки записываются длиной
+ * и байтами UTF-8, отсутствующее значение - длиной -1.
+ * </p>
+ *
+ * <p>Файл пишется во временный файл рядом, сбрасывается на диск и атомарно подменяет прежний,
+ * поэтому при сбое остаётся предыдущий целый снимок. Читается файл через отображение в память.</p>
+ */
+public class SnapshotStore {
+    private static final int MAGIC = 0x4C57534E; // "LWSN"
+    private static final int FORMAT_VERSION = 1;
+
+    private final Logger logger = LogManager.getLogger();
+    private final Path path;
+
+    /**
+     * Версия коллекции, записанная последней, чтобы не переписывать неизменившийся снимок.
+     */
+    private long savedVersion = -1;
+
+    public SnapshotStore(Path path) {
+        this.path = path;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Записывает снимок коллекции, если он изменился с последней записи. Ошибки записи только логируются.
+     *
+     * @param snapshot снимок коллекции
+     */
+    public synchronized void save(CollectionSnapshot snapshot) {
+        if (snapshot.getVersion() == savedVersion) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            write(snapshot.values());
+            savedVersion = snapshot.getVersion();
+            logger.info("Снимок коллекции записан в {}: {} элементов за {} мс",
+                    path, snapshot.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            logger.error("Не удалось записать снимок коллекции в {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Записывает элементы в файл снимка.
+     *
+     * @param labWorks элементы коллекции
+     * @throws IOException если файл не удалось записать
+     */
+    void write(Collection<LabWork> labWorks) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(RowVersionStamp.of(labWorks).getHighWaterMark());
+            out.writeInt(labWorks.size());
+            for (LabWork labWork : labWorks) {
+                writeLabWork(out, labWork);
+            }
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Читает элементы из файла снимка.
+     *
+     * @return элементы с владельцами и версиями строк или {@code null}, если файла нет
+     * @throws IOException если файл не удалось прочитать или он повреждён
+     */
+    public List<LabWork> read() throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot file is too large: " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return parse(buffer);
+        }
+    }
+
+    private static List<LabWork> parse(ByteBuffer buffer) throws IOException {
+        try {
+            int contentLength = buffer.limit() - Long.BYTES;
+            if (contentLength < 0) {
+                throw new IOException("Snapshot file is truncated");
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().limit(contentLength));
+            if (crc.getValue() != buffer.getLong(contentLength)) {
+                throw new IOException("Snapshot checksum mismatch");
+            }
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a collection snapshot file");
+            }
+            int format = buffer.getInt();
+            if (format != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot format: " + format);
+            }
+            buffer.getLong(); // наибольшая версия строки, пересчитывается по элементам
+            int count = buffer.getInt();
+            List<LabWork> labWorks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                labWorks.add(readLabWork(buffer));
+            }
+            if (buffer.position() != contentLength) {
+                throw new IOException("Unexpected data after snapshot elements");
+            }
+            return labWorks;
+        } catch (RuntimeException e) {
+            // файл обрывается посреди элемента или элемент не прошёл проверку модели
+            throw new IOException("Snapshot file is corrupted", e);
+        }
+    }
+
+    /**
+     * Записывает элемент в двоичном формате снимка вместе с владельцем и версией строки.
+     */
+    static void writeLabWork(DataOutputStream out, LabWork labWork) throws IOException {
+        out.writeInt(labWork.getId());
+        out.writeLong(labWork.getRowVersion());
+        writeString(out, labWork.getName());
+        out.writeLong(labWork.getCoordinates().getX());
+        out.writeInt(labWork.getCoordinates().getY());
+        writeString(out, labWork.getCreationDate());
+        out.writeFloat(labWork.getMinimalPoint());
+        out.writeInt(labWork.getTunedInWorks());
+        out.writeByte(labWork.getDifficulty().ordinal());
+
+        Discipline discipline = labWork.getDiscipline();
+        out.writeBoolean(discipline != null);
+        if (discipline != null) {
+            writeString(out, discipline.getName());
+            out.writeLong(discipline.getLectureHours());
+            out.writeLong(discipline.getPracticeHours());
+            out.writeLong(discipline.getSelfStudyHours());
+            out.writeInt(discipline.getLabsCount());
+        }
+
+        writeString(out, labWork.getOwnerLogin());
+    }
+
+    /**
+     * Читает элемент, записанный {@link #writeLabWork(DataOutputStream, LabWork)}.
+     */
+    static LabWork readLabWork(ByteBuffer in) {
+        int id = in.getInt();
+        long rowVersion = in.getLong();
+        String name = readString(in);
+        long x = in.getLong();
+        int y = in.getInt();
+        String creationDate = readString(in);
+        float minimalPoint = in.getFloat();
+        int tunedInWorks = in.getInt();
+        Difficulty difficulty = Difficulty.values()[in.get()];
+
+        Discipline discipline = null;
+        if (in.get() != 0) {
+            discipline = new Discipline(readString(in), in.getLong(), in.getLong(), in.getLong(), in.getInt());
+        }
+
+        LabWork labWork = new LabWork(id, name, new Coordinates(x, y), creationDate,
+                minimalPoint, tunedInWorks, difficulty, discipline, readString(in));
+        labWork.setRowVersion(rowVersion);
+        return labWork;
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.server;
+
+import com.example.server.models.Coordinates;
+import com.example.server.models.LabWork;
+
+import java.util.*;
+
+/**
+ * SpatialIndex - сеточный индекс элементов коллекции по координатам.
+ * <p>
+ * Плоскость разбита на квадратные ячейки со стороной {@link #CELL_SIZE}, в индексе хранятся только
+ * непустые ячейки, упорядоченные по (x, y). Запрос по радиусу просматривает лишь ячейки, пересекающие квадрат
+ * вокруг круга, поиск ближайших соседей - ячейки расходящимися от точки запроса кольцами.
+ * Если ячеек-кандидатов больше, чем непустых ячеек, просматриваются непустые ячейки.
+ * </p>
+ *
+ * <p>Расстояния считаются в {@code double}, так как квадрат координаты {@code x} может не поместиться в {@code long}.
+ * Индекс неизменяем и построен на {@link PersistentTreap}: изменение возвращает новый индекс,
+ * поэтому его можно читать из любых потоков без блокировок.</p>
+ */
+final class SpatialIndex {
+    /**
+     * Сторона ячейки сетки.
+     */
+    static final int CELL_SIZE = 16;
+
+    static final SpatialIndex EMPTY = new SpatialIndex(PersistentTreap.empty(), 0);
+
+    private final PersistentTreap<Cell, PersistentTreap<Integer, LabWork>> cells;
+    private final int size;
+
+    private SpatialIndex(PersistentTreap<Cell, PersistentTreap<Integer, LabWork>> cells, int size) {
+        this.cells = cells;
+        this.size = size;
+    }
+
+    /**
+     * Возвращает индекс, в котором учтён элемент {@code labWork}. Элементы без координат не индексируются.
+     */
+    SpatialIndex add(LabWork labWork) {
+        Coordinates c = labWork.getCoordinates();
+        if (c == null) {
+            return this;
+        }
+        Cell cell = cellOf(c.getX(), c.getY());
+        PersistentTreap<Integer, LabWork> bucket = cells.get(cell);
+        if (bucket == null) {
+            bucket = PersistentTreap.empty();
+        }
+        int added = bucket.get(labWork.getId()) == null ? 1 : 0;
+        return new SpatialIndex(cells.put(cell, bucket.put(labWork.getId(), labWork)), size + added);
+    }
+
+    /**
+     * Возвращает индекс без элемента {@code labWork}.
+     */
+    SpatialIndex remove(LabWork labWork) {
+        Coordinates c = labWork.getCoordinates();
+        if (c == null) {
+            return this;
+        }
+        Cell cell = cellOf(c.getX(), c.getY());
+        PersistentTreap<Integer, LabWork> bucket = cells.get(cell);
+        if (bucket == null || bucket.get(labWork.getId()) == null) {
+            return this;
+        }
+        bucket = bucket.remove(labWork.getId());
+        return new SpatialIndex(bucket.isEmpty() ? cells.remove(cell) : cells.put(cell, bucket), size - 1);
+    }
+
+    /**
+     * Возвращает элементы, для координат которых x² + y² не превышает {@code squaredRadius}.
+     */
+    List<LabWork> withinRadius(double squaredRadius) {
+        List<LabWork> result = new ArrayList<>();
+        if (squaredRadius < 0) {
+            return result;
+        }
+        double radius = Math.sqrt(squaredRadius);
+        long minX = Math.floorDiv((long) Math.floor(-radius), CELL_SIZE);
+        long maxX = Math.floorDiv((long) Math.ceil(radius), CELL_SIZE);
+        long minY = minX;
+        long maxY = maxX;
+
+        if (maxX - minX + 1 > cells.size()) {
+            for (PersistentTreap<Integer, LabWork> bucket : cells.values()) {
+                collectWithin(bucket, squaredRadius, result);
+            }
+        } else {
+            // в каждом столбце сетки непустые ячейки нужного диапазона идут подряд
+            for (long x = minX; x <= maxX; x++) {
+                for (PersistentTreap<Integer, LabWork> bucket : cells.valuesBetween(new Cell(x, minY), new Cell(x, maxY))) {
+                    collectWithin(bucket, squaredRadius, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает не более {@code k} элементов, ближайших к точке ({@code x}, {@code y}), в порядке возрастания расстояния.
+     * При равном расстоянии первым идёт элемент с меньшим ID.
+     */
+    List<LabWork> nearest(int k, long x, long y) {
+        if (k <= 0 || size == 0) {
+            return List.of();
+        }
+        Comparator<Candidate> farthestFirst = Comparator.<Candidate>comparingDouble(c -> c.distance)
+                .thenComparingInt(c -> c.labWork.getId())
+                .reversed();
+        PriorityQueue<Candidate> best = new PriorityQueue<>(farthestFirst);
+
+        long centerX = Math.floorDiv(x, CELL_SIZE);
+        long centerY = Math.floorDiv(y, CELL_SIZE);
+        int visited = 0;
+        int seen = 0;
+        for (long ring = 0; seen < size; ring++) {
+            // ближайшая точка кольца отстоит от точки запроса не меньше чем на (ring - 1) ячеек;
+            // элемент кольца на том же расстоянии может иметь меньший ID, поэтому при равенстве кольцо проверяется
+            double minDistance = Math.max(0, ring - 1) * (double) CELL_SIZE;
+            if (best.size() == k && best.peek().distance < minDistance * minDistance) {
+                break;
+            }
+            long ringCells = ring == 0 ? 1 : 8 * ring;
+            if (visited + ringCells > cells.size()) {
+                // колец слишком много по сравнению с непустыми ячейками: проще проверить все
+                best.clear();
+                for (PersistentTreap<Integer, LabWork> bucket : cells.values()) {
+                    offerAll(bucket, x, y, k, best);
+                }
+                break;
+            }
+            for (long cx = centerX - ring; cx <= centerX + ring; cx++) {
+                boolean edge = cx == centerX - ring || cx == centerX + ring;
+                long step = edge ? 1 : 2 * ring;
+                for (long cy = centerY - ring; cy <= centerY + ring; cy += Math.max(1, step)) {
+                    PersistentTreap<Integer, LabWork> bucket = cells.get(new Cell(cx, cy));
+                    if (bucket != null) {
+                        offerAll(bucket, x, y, k, best);
+                        seen += bucket.size();
+                    }
+                }
+            }
+            visited += (int) ringCells;
+        }
+
+        List<LabWork> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(best.poll().labWork);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private static void collectWithin(PersistentTreap<Integer, LabWork> bucket, double squaredRadius, List<LabWork> result) {
+        for (LabWork labWork : bucket.values()) {
+            if (isWithin(labWork.getCoordinates(), squaredRadius)) {
+                result.add(labWork);
+            }
+        }
+    }
+
+    private static void offerAll(PersistentTreap<Integer, LabWork> bucket, long x, long y, int k, PriorityQueue<Candidate> best) {
+        for (LabWork labWork : bucket.values()) {
+            Candidate candidate = new Candidate(labWork, squaredDistance(labWork.getCoordinates(), x, y));
+            best.add(candidate);
+            if (best.size() > k) {
+                best.poll();
+            }
+        }
+    }
+
+    /**
+     * Проверяет, что x² + y² для координат не превышает {@code squaredRadius}.
+     */
+    static boolean isWithin(Coordinates c, double squaredRadius) {
+        return squaredDistance(c, 0, 0) <= squaredRadius;
+    }
+
+    private static double squaredDistance(Coordinates c, long x, long y) {
+        double dx = (double) c.getX() - x;
+        double dy = (double) c.getY() - y;
+        return dx * dx + dy * dy;
+    }
+
+    private static Cell cellOf(long x, int y) {
+        return new Cell(Math.floorDiv(x, CELL_SIZE), Math.floorDiv(y, CELL_SIZE));
+    }
+
+    private static final class Cell implements Comparable<Cell> {
+        final long x;
+        final long y;
+
+        Cell(long x, long y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) return true;
+            if (!(object instanceof Cell)) return false;
+            Cell that = (Cell) object;
+            return x == that.x && y == that.y;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(x) + Long.hashCode(y);
+        }
+
+        @Override
+        public int compareTo(Cell other) {
+            int cmp = Long.compare(x, other.x);
+            return cmp != 0 ? cmp : Long.compare(y, other.y);
+        }
+    }
+
+    private static final class Candidate {
+        final LabWork labWork;
+        final double distance;
+
+        Candidate(LabWork labWork, double distance) {
+            this.labWork = labWork;
+            this.distance = distance;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.server;
+
+import com.example.server.database.LabWorkMutation;
+import com.example.server.models.LabWork;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * WriteAheadLog - локальный журнал изменений коллекции, ещё не подтверждённых записью в БД.
+ * <p>
+ * Журнал состоит из сегментов {@code <номер>.wal} в своём каталоге. Сегмент начинается с заголовка
+ * (сигнатура и версия формата), за ним идут записи: длина, CRC32 и изменение {@link LabWorkMutation},
+ * элементы которого хранятся в формате {@link SnapshotStore}. {@link #append(LabWorkMutation)} возвращает
+ * управление только после сброса записи на диск.
+ * </p>
+ *
+ * <p>{@link #seal()} закрывает текущий сегмент и возвращает накопленные в нём изменения для записи в БД,
+ * новые изменения пишутся в следующий сегмент. После записи в БД {@link #confirm()} удаляет закрытые
+ * сегменты. При открытии журнала сегменты прошлого запуска читаются до первой неполной или повреждённой
+ * записи и считаются закрытыми, их изменения возвращает {@link #recovered()}.</p>
+ */
+public class WriteAheadLog implements AutoCloseable {
+    private static final int MAGIC = 0x4C57414C; // "LWAL"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final String SUFFIX = ".wal";
+
+    private final Logger logger = LogManager.getLogger();
+    private final Path directory;
+    private final List<LabWorkMutation> recovered;
+
+    /**
+     * Закрытые сегменты, изменения которых ещё не подтверждены.
+     */
+    private final List<Path> sealed = new ArrayList<>();
+    private List<LabWorkMutation> pending = new ArrayList<>();
+    private long segmentNumber;
+    private Path current;
+    private FileChannel channel;
+
+    /**
+     * Открывает журнал в каталоге, читая сегменты, оставшиеся от прошлого запуска.
+     *
+     * @param directory каталог журнала, создаётся при отсутствии
+     * @throws IOException если каталог или сегменты не удалось прочитать или создать
+     */
+    public WriteAheadLog(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        segments.sort(null);
+
+        List<LabWorkMutation> mutations = new ArrayList<>();
+        for (Path segment : segments) {
+            readSegment(segment, mutations);
+            segmentNumber = Math.max(segmentNumber, segmentNumber(segment));
+        }
+        sealed.addAll(segments);
+        recovered = mutations;
+        if (!mutations.isEmpty()) {
+            logger.info("В журнале {} найдено {} неподтверждённых изменений", directory, mutations.size());
+        }
+        openSegment();
+    }
+
+    /**
+     * Возвращает изменения, прочитанные из сегментов прошлого запуска.
+     */
+    public List<LabWorkMutation> recovered() {
+        return recovered;
+    }
+
+    /**
+     * Дописывает изменение в журнал и сбрасывает его на диск.
+     * <p>Если запись не удалась, сегмент обрезается до прежней длины.</p>
+     *
+     * @param mutation изменение
+     * @throws IOException если изменение не удалось записать
+     */
+    public void append(LabWorkMutation mutation) throws IOException {
+        ByteBuffer record = encode(mutation);
+        synchronized (this) {
+            if (channel == null) {
+                throw new IOException("Write-ahead log is closed");
+            }
+            long position = channel.position();
+            try {
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                try {
+                    channel.truncate(position);
+                    channel.position(position);
+                } catch (IOException suppressed) {
+                    // без обрезки следующие записи окажутся после неполной и будут потеряны при чтении
+                    e.addSuppressed(suppressed);
+                    channel.close();
+                    channel = null;
+                }
+                throw e;
+            }
+            pending.add(mutation);
+        }
+    }
+
+    /**
+     * Закрывает текущий сегмент, если в нём есть изменения, и начинает новый.
+     *
+     * @return изменения закрытого сегмента в порядке записи или пустой список
+     * @throws IOException если не удалось начать новый сегмент
+     */
+    public synchronized List<LabWorkMutation> seal() throws IOException {
+        if (pending.isEmpty() || channel == null) {
+            return List.of();
+        }
+        channel.close();
+        sealed.add(current);
+        openSegment();
+        List<LabWorkMutation> mutations = pending;
+        pending = new ArrayList<>();
+        return mutations;
+    }
+
+    /**
+     * Удаляет закрытые сегменты: их изменения записаны в БД.
+     *
+     * @throws IOException если сегмент не удалось удалить
+     */
+    public synchronized void confirm() throws IOException {
+        while (!sealed.isEmpty()) {
+            Files.deleteIfExists(sealed.get(0));
+            sealed.remove(0);
+        }
+    }
+
+    /**
+     * Закрывает текущий сегмент. Неподтверждённые сегменты остаются на диске до следующего запуска.
+     */
+    @Override
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+            if (pending.isEmpty() && sealed.isEmpty()) {
+                Files.deleteIfExists(current);
+            }
+        } catch (IOException e) {
+            logger.warn("Не удалось закрыть журнал {}: {}", directory, e.getMessage());
+        }
+        channel = null;
+    }
+
+    private void openSegment() throws IOException {
+        segmentNumber++;
+        current = directory.resolve(String.format("%020d%s", segmentNumber, SUFFIX));
+        channel = FileChannel.open(current, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(true);
+        syncDirectory();
+    }
+
+    /**
+     * Сбрасывает на диск запись каталога о новом сегменте. Не все системы позволяют открыть каталог,
+     * тогда запись каталога сбрасывается самой файловой системой.
+     */
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            logger.debug("Каталог журнала не сброшен на диск: {}", e.getMessage());
+        }
+    }
+
+    private void readSegment(Path segment, List<LabWorkMutation> mutations) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        if (buffer.remaining() < HEADER_SIZE) {
+            return; // сегмент создан, но заголовок не успел записаться
+        }
+        if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+            throw new IOException("Not a write-ahead log segment: " + segment);
+        }
+
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            long checksum = Integer.toUnsignedLong(buffer.getInt());
+            if (length < 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if (crc.getValue() != checksum) {
+                buffer.position(start);
+                break;
+            }
+            try {
+                mutations.add(decode(payload));
+            } catch (RuntimeException e) {
+                throw new IOException("Write-ahead log record is corrupted: " + segment, e);
+            }
+            buffer.position(buffer.position() + length);
+        }
+        if (buffer.hasRemaining()) {
+            logger.warn("В сегменте {} отброшено {} байт неполной записи", segment, buffer.remaining());
+        }
+    }
+
+    private static ByteBuffer encode(LabWorkMutation mutation) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0); // длина
+        out.writeInt(0); // CRC32
+        out.writeByte(mutation.getKind().ordinal());
+        SnapshotStore.writeString(out, mutation.getOwnerLogin());
+        out.writeInt(mutation.getId());
+        out.writeInt(mutation.getLabWorks().size());
+        for (LabWork labWork : mutation.getLabWorks()) {
+            SnapshotStore.writeLabWork(out, labWork);
+        }
+        out.flush();
+
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        int length = record.limit() - RECORD_HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(record.slice(RECORD_HEADER_SIZE, length));
+        record.putInt(0, length).putInt(Integer.BYTES, (int) crc.getValue());
+        return record;
+    }
+
+    private static LabWorkMutation decode(ByteBuffer in) {
+        LabWorkMutation.Kind kind = LabWorkMutation.Kind.values()[in.get()];
+        String ownerLogin = SnapshotStore.readString(in);
+        int id = in.getInt();
+        int count = in.getInt();
+        List<LabWork> labWorks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            labWorks.add(SnapshotStore.readLabWork(in));
+        }
+        if (in.hasRemaining()) {
+            throw new IllegalStateException("Unexpected data after mutation");
+        }
+        return LabWorkMutation.of(kind, ownerLogin, id, labWorks);
+    }
+
+    private static long segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
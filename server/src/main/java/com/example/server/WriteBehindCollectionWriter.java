@@ -0,0 +1,301 @@
+package com.example.server;
+
+import com.example.server.database.CollectionDataBaseService;
+import com.example.server.database.IdAllocator;
+import com.example.server.database.LabWorkMutation;
+import com.example.server.models.LabWork;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * WriteBehindCollectionWriter - запись изменения в локальный журнал и в коллекцию в памяти,
+ * а в БД - в фоне.
+ * <p>
+ * Изменение сбрасывается на диск в {@link WriteAheadLog} и применяется к коллекции под блокировкой
+ * владельца, поэтому порядок изменений одного владельца в журнале и в памяти совпадает. Клиент получает
+ * ответ без обращения к БД, кроме редкого резервирования блока ID в {@link IdAllocator}.
+ * </p>
+ *
+ * <p>Поток {@code wal-writer} раз в {@code flushIntervalMillis} закрывает текущий сегмент журнала,
+ * записывает его изменения в БД одной транзакцией и удаляет сегмент. Если БД недоступна, запись
+ * повторяется с растущей паузой. Изменения, не записанные до остановки или сбоя сервера, записываются
+ * в БД при следующем запуске в {@link #recover()} до загрузки коллекции.</p>
+ *
+ * <p>Элементы, нарушающие ограничения таблицы, не принимаются в журнал. Если БД всё же отбросила
+ * изменение, затронутые им элементы коллекции перечитываются из БД, см. {@link #reconcile(List)}.</p>
+ *
+ * <p>Владельцем изменяемого элемента считается только пользователь, указанный в нём: как и в БД,
+ * элементы без владельца нельзя изменить или удалить.</p>
+ */
+public class WriteBehindCollectionWriter implements CollectionWriter {
+    /**
+     * Наибольшая пауза между попытками записать изменения в недоступную БД.
+     */
+    private static final long MAX_RETRY_DELAY_MILLIS = 10_000;
+
+    private final Logger logger = LogManager.getLogger();
+    private final CollectionSyncManager collectionSyncManager;
+    private final CollectionDataBaseService dataBaseService;
+    private final WriteAheadLog log;
+    private final IdAllocator idAllocator;
+    private final long flushIntervalMillis;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    /**
+     * Изменения закрытого сегмента, которые ещё не удалось записать в БД.
+     */
+    private List<LabWorkMutation> unconfirmed = List.of();
+
+    /**
+     * @param collectionSyncManager коллекция в памяти
+     * @param dataBaseService       сервис коллекции в БД
+     * @param log                   журнал изменений
+     * @param idAllocator           источник ID новых элементов
+     * @param flushIntervalMillis   период записи изменений в БД в миллисекундах
+     */
+    public WriteBehindCollectionWriter(CollectionSyncManager collectionSyncManager,
+                                       CollectionDataBaseService dataBaseService, WriteAheadLog log,
+                                       IdAllocator idAllocator, long flushIntervalMillis) {
+        this.collectionSyncManager = collectionSyncManager;
+        this.dataBaseService = dataBaseService;
+        this.log = log;
+        this.idAllocator = idAllocator;
+        this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+    }
+
+    /**
+     * Записывает в БД изменения, оставшиеся в журнале от прошлого запуска.
+     *
+     * @throws RuntimeException если изменения не удалось записать: тогда они остаются в журнале
+     */
+    public void recover() throws RuntimeException {
+        List<LabWorkMutation> recovered = log.recovered();
+        if (!recovered.isEmpty()) {
+            dataBaseService.applyMutations(recovered);
+            logger.info("Из журнала в БД записано {} изменений", recovered.size());
+        }
+        try {
+            log.confirm();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void add(LabWork labWork, String ownerLogin) {
+        requireStorable(labWork);
+        labWork.setId(idAllocator.next());
+        labWork.setOwnerLogin(ownerLogin);
+        collectionSyncManager.withOwnerLock(ownerLogin, () -> {
+            append(LabWorkMutation.insert(List.of(labWork), ownerLogin));
+            collectionSyncManager.add(labWork);
+            return null;
+        });
+    }
+
+    @Override
+    public void addAll(List<LabWork> labWorks, String ownerLogin) {
+        labWorks.forEach(WriteBehindCollectionWriter::requireStorable);
+        int[] ids = idAllocator.next(labWorks.size());
+        for (int i = 0; i < ids.length; i++) {
+            labWorks.get(i).setId(ids[i]);
+            labWorks.get(i).setOwnerLogin(ownerLogin);
+        }
+        collectionSyncManager.withOwnerLock(ownerLogin, () -> {
+            append(LabWorkMutation.insert(labWorks, ownerLogin));
+            collectionSyncManager.addAll(labWorks, ownerLogin);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean update(LabWork labWork, String ownerLogin) {
+        requireStorable(labWork);
+        labWork.setOwnerLogin(ownerLogin);
+        return collectionSyncManager.withOwnerLock(ownerLogin, () -> {
+            if (!isOwner(labWork.getId(), ownerLogin)) {
+                return false;
+            }
+            append(LabWorkMutation.update(labWork, ownerLogin));
+            collectionSyncManager.update(labWork, ownerLogin);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean removeById(int id, String ownerLogin) {
+        return collectionSyncManager.withOwnerLock(ownerLogin, () -> {
+            if (!isOwner(id, ownerLogin)) {
+                return false;
+            }
+            append(LabWorkMutation.delete(id, ownerLogin));
+            collectionSyncManager.removeIf(id, ownerLogin);
+            return true;
+        });
+    }
+
+    @Override
+    public List<Integer> removeLower(int id, String ownerLogin) {
+        return collectionSyncManager.withOwnerLock(ownerLogin, () -> {
+            List<Integer> removedIds = new ArrayList<>();
+            for (LabWork labWork : collectionSyncManager.getAllByOwner(ownerLogin)) {
+                if (labWork.getId() >= id) {
+                    break;
+                }
+                if (ownerLogin.equals(labWork.getOwnerLogin())) {
+                    removedIds.add(labWork.getId());
+                }
+            }
+            if (!removedIds.isEmpty()) {
+                append(LabWorkMutation.deleteLower(id, ownerLogin));
+                collectionSyncManager.removeLower(id, ownerLogin);
+            }
+            return removedIds;
+        });
+    }
+
+    @Override
+    public void clear(String ownerLogin) {
+        collectionSyncManager.withOwnerLock(ownerLogin, () -> {
+            append(LabWorkMutation.clear(ownerLogin));
+            collectionSyncManager.clear(ownerLogin);
+            return null;
+        });
+    }
+
+    /**
+     * Запускает поток записи изменений в БД.
+     */
+    @Override
+    public void start() {
+        running = true;
+        writer = new Thread(this::writeLoop, "wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Останавливает поток записи и записывает в БД оставшиеся изменения.
+     * Если это не удалось, изменения будут записаны при следующем запуске.
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (writer != null) {
+            writer.interrupt();
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!flush()) {
+            logger.warn("Изменения остались в журнале и будут записаны в БД при следующем запуске");
+        }
+        log.close();
+    }
+
+    private void writeLoop() {
+        long delay = flushIntervalMillis;
+        while (running) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                return;
+            }
+            delay = flush() ? flushIntervalMillis : Math.min(delay * 2, MAX_RETRY_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * Записывает в БД изменения закрытого сегмента, если запись прошлого сегмента не удалась,
+     * иначе закрывает текущий сегмент и записывает его изменения.
+     *
+     * @return {@code true}, если изменений не осталось
+     */
+    private boolean flush() {
+        try {
+            if (unconfirmed.isEmpty()) {
+                unconfirmed = log.seal();
+            }
+            if (unconfirmed.isEmpty()) {
+                return true;
+            }
+            List<LabWorkMutation> rejected = dataBaseService.applyMutations(unconfirmed);
+            logger.debug("В БД записано {} изменений из журнала", unconfirmed.size() - rejected.size());
+            unconfirmed = List.of();
+            log.confirm();
+            reconcile(rejected);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.error("Не удалось записать изменения из журнала в БД: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Возвращает элементам, затронутым отброшенными БД изменениями, их состояние из БД.
+     * <p>
+     * Клиент уже получил ответ об успехе, а коллекция в памяти - изменение, поэтому без сверки
+     * коллекция расходилась бы с БД до следующей загрузки. Элементы перечитываются и публикуются
+     * под блокировкой владельца, чтобы не перемешаться с его новыми изменениями. Удаление элементов
+     * владельца целиком или по границе ID ограничений таблицы не нарушает и не сверяется.
+     * </p>
+     */
+    private void reconcile(List<LabWorkMutation> rejected) {
+        for (LabWorkMutation mutation : rejected) {
+            int[] ids = switch (mutation.getKind()) {
+                case INSERT -> mutation.getLabWorks().stream().mapToInt(LabWork::getId).toArray();
+                case UPDATE, DELETE -> new int[]{mutation.getId()};
+                case DELETE_LOWER, CLEAR -> new int[0];
+            };
+            if (ids.length == 0) {
+                continue;
+            }
+            try {
+                collectionSyncManager.withOwnerLock(mutation.getOwnerLogin(), () -> {
+                    List<LabWork> actual = new ArrayList<>(ids.length);
+                    dataBaseService.loadByIds(ids, actual::add);
+                    collectionSyncManager.restore(mutation.getOwnerLogin(), ids, actual);
+                    return null;
+                });
+                logger.warn("Изменение {} отброшено БД, элементы {} перечитаны из БД", mutation, Arrays.toString(ids));
+            } catch (RuntimeException e) {
+                logger.error("Не удалось перечитать из БД элементы {} отброшенного изменения {}: {}",
+                        Arrays.toString(ids), mutation, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Отклоняет элемент, который БД не примет: иначе клиент получил бы ответ об успехе
+     * до того, как изменение будет отброшено при записи в БД.
+     */
+    private static void requireStorable(LabWork labWork) {
+        if (!CollectionDataBaseService.satisfiesConstraints(labWork)) {
+            throw new IllegalArgumentException("LabWork violates table constraints: " + labWork);
+        }
+    }
+
+    private void append(LabWorkMutation mutation) {
+        try {
+            log.append(mutation);
+        } catch (IOException e) {
+            logger.error("Не удалось записать изменение в журнал: {}", e.getMessage());
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean isOwner(int id, String ownerLogin) {
+        LabWork current = collectionSyncManager.getById(id);
+        return current != null && ownerLogin.equals(current.getOwnerLogin());
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.server.benchmark;
+
+import com.example.server.database.CollectionDataBaseService;
+import com.example.server.database.ConnectionPool;
+import com.example.server.database.DataBaseConnector;
+import com.example.server.database.UserDataBaseService;
+import com.example.server.models.Coordinates;
+import com.example.server.models.Difficulty;
+import com.example.server.models.Discipline;
+import com.example.server.models.LabWork;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Сравнение загрузки и сохранения всей коллекции через SELECT / пакетный INSERT и через COPY.
+ * <p>
+ * Записывает заданное число элементов от имени отдельного пользователя сначала пакетным INSERT,
+ * затем командой COPY, и после каждого сохранения загружает всю таблицу обоими способами.
+ * В конце записи пользователя удаляются.
+ * </p>
+ *
+ * <p>Подключение берётся из тех же переменных окружения, что и у сервера:
+ * {@code DB_USER}, {@code DB_PASSWORD}, {@code SSH_USER}, {@code SSH_PASSWORD}.</p>
+ *
+ * <p>Запуск: {@code java -cp server.jar com.example.server.benchmark.BulkLoadBenchmark [rows] [rounds] [owner]}</p>
+ */
+public class BulkLoadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        String owner = args.length > 2 ? args[2] : "bulk_benchmark";
+
+        DataBaseConnector connector = new DataBaseConnector(requireEnv("DB_USER"), requireEnv("DB_PASSWORD"),
+                requireEnv("SSH_USER"), requireEnv("SSH_PASSWORD"));
+        connector.connect();
+        try (ConnectionPool pool = new ConnectionPool(connector, 1, 2, Duration.ofSeconds(30), 16)) {
+            UserDataBaseService users = new UserDataBaseService(pool);
+            CollectionDataBaseService labWorks = new CollectionDataBaseService(pool);
+            users.init();
+            labWorks.init();
+            try {
+                users.registerNewUser(owner, "benchmark");
+            } catch (RuntimeException e) {
+                // пользователь остался от прошлого запуска
+            }
+
+            List<LabWork> generated = generate(rows);
+            List<String> results = new ArrayList<>();
+            try {
+                for (int round = 1; round <= rounds; round++) {
+                    results.add(measure(round, "save batch", rows, () -> {
+                        labWorks.saveByBatch(generated, owner);
+                        return null;
+                    }));
+                    results.add(measure(round, "load select", rows, () -> count(labWorks::loadBySelect)));
+                    results.add(measure(round, "save copy", rows, () -> {
+                        labWorks.saveByCopy(generated, owner);
+                        return null;
+                    }));
+                    results.add(measure(round, "load copy", rows, () -> count(labWorks::loadByCopy)));
+                }
+            } finally {
+                labWorks.clearCollection(owner);
+            }
+
+            System.out.println();
+            System.out.printf("%-6s %-12s %10s %10s %12s%n", "round", "path", "rows", "millis", "rows/s");
+            results.forEach(System.out::println);
+        } finally {
+            connector.close();
+        }
+    }
+
+    private static String measure(int round, String path, int rows, Action action) throws Exception {
+        long start = System.nanoTime();
+        Object result = action.run();
+        long micros = Math.max(1, (System.nanoTime() - start) / 1_000);
+        int count = result instanceof Integer loaded ? loaded : rows;
+        return String.format("%-6d %-12s %10d %10.1f %12d", round, path, count, micros / 1000.0, count * 1_000_000L / micros);
+    }
+
+    /**
+     * Загружает всю таблицу и возвращает число полученных элементов.
+     */
+    private static int count(Consumer<Consumer<LabWork>> load) {
+        int[] count = new int[1];
+        load.accept(labWork -> count[0]++);
+        return count[0];
+    }
+
+    /**
+     * Элементы с разнообразными полями, в том числе с запятыми и кавычками в строках.
+     */
+    private static List<LabWork> generate(int rows) {
+        Difficulty[] difficulties = Difficulty.values();
+        List<LabWork> generated = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Discipline discipline = i % 5 == 0 ? null
+                    : new Discipline("Discipline \"" + i % 40 + "\", part " + i % 3, 32L + i % 10, 16L, i % 50, 1 + i % 8);
+            generated.add(new LabWork(1_000_000 + i, "Lab " + i + ", variant " + i % 17,
+                    new Coordinates(i % 1000 - 200, i % 700), "2024-01-01T00:00+03:00[Europe/Moscow]",
+                    1.5f + i % 100, i % 20, difficulties[i % difficulties.length], discipline));
+        }
+        return generated;
+    }
+
+    private static String requireEnv(String name) {
+        String value = System.getenv(name);
+        if (value == null) {
+            throw new IllegalStateException("Environment variable " + name + " is not set");
+        }
+        return value;
+    }
+
+    @FunctionalInterface
+    private interface Action {
+        Object run() throws Exception;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.server.benchmark;
+
+import com.example.server.models.Command;
+import com.example.server.models.Coordinates;
+import com.example.server.models.Difficulty;
+import com.example.server.models.Discipline;
+import com.example.server.models.LabWork;
+import com.example.server.models.LabWorkListPayload;
+import com.example.server.models.Response;
+import com.example.server.models.UserCommand;
+import com.example.server.protocol.MessageCodec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Сравнение кодеков {@link MessageCodec} по размеру и времени кодирования в расчёте на один элемент.
+ * <p>
+ * Для каждого кодека кодирует и декодирует команду {@code add_batch} с заданным числом элементов
+ * и ответ {@code show} с теми же элементами. Время каждого действия - лучшее из {@code rounds} повторов
+ * после такого же числа прогревочных.
+ * </p>
+ *
+ * <p>Запуск: {@code java -cp server.jar com.example.server.benchmark.CodecBenchmark [labWorks] [rounds]}</p>
+ */
+public class CodecBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        List<LabWork> labWorks = generate(count);
+        UserCommand command = new UserCommand("add_batch", List.of(), null);
+        command.payload = new LabWorkListPayload(labWorks);
+        command.token = "00000000-0000-0000-0000-000000000000";
+        command.requestId = 1;
+        Response response = new Response(labWorks.stream().map(LabWork::toString).collect(Collectors.joining("\n")));
+        response.requestId = 1;
+
+        List<String> results = new ArrayList<>();
+        for (MessageCodec codec : new MessageCodec[]{MessageCodec.JSON, MessageCodec.BINARY}) {
+            byte[] commandBytes = codec.encodeCommand(command);
+            byte[] responseBytes = codec.encodeResponse(response);
+            results.add(row(codec, "add_batch", count, commandBytes.length,
+                    best(rounds, () -> codec.encodeCommand(command)),
+                    best(rounds, () -> codec.decodeCommand(commandBytes))));
+            results.add(row(codec, "show", count, responseBytes.length,
+                    best(rounds, () -> codec.encodeResponse(response)),
+                    best(rounds, () -> codec.decodeResponse(responseBytes))));
+        }
+
+        System.out.println();
+        System.out.printf("%-8s %-10s %12s %14s %14s%n", "codec", "message", "bytes/item", "encode ns/item", "decode ns/item");
+        results.forEach(System.out::println);
+    }
+
+    private static String row(MessageCodec codec, String message, int count, int bytes, long encodeNanos, long decodeNanos) {
+        return String.format("%-8s %-10s %12.1f %14d %14d", codec.name(), message, (double) bytes / count,
+                encodeNanos / count, decodeNanos / count);
+    }
+
+    /**
+     * Возвращает лучшее время действия в наносекундах.
+     */
+    private static long best(int rounds, Action action) throws Exception {
+        for (int i = 0; i < rounds; i++) {
+            action.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            action.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static List<LabWork> generate(int count) {
+        Difficulty[] difficulties = Difficulty.values();
+        List<LabWork> generated = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Discipline discipline = i % 5 == 0 ? null
+                    : new Discipline("Discipline \"" + i % 40 + "\", part " + i % 3, 32L + i % 10, 16L, i % 50, 1 + i % 8);
+            generated.add(new LabWork(1_000_000 + i, "Lab " + i + ", variant " + i % 17,
+                    new Coordinates(i % 1000 - 200, i % 700), "2024-01-01T00:00+03:00[Europe/Moscow]",
+                    1.5f + i % 100, i % 20, difficulties[i % difficulties.length], discipline, "user" + i % 50));
+        }
+        return generated;
+    }
+
+    @FunctionalInterface
+    private interface Action {
+        Object run() throws Exception;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.server.benchmark;
+
+import com.example.server.Server;
+import com.example.server.ServerMode;
+import com.example.server.ServerTransport;
+import com.example.server.protocol.Frame;
+import com.example.server.protocol.FrameType;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сравнение режимов {@link ServerMode} по числу одновременно обслуживаемых подключений.
+ * <p>
+ * Для каждого режима поднимает транспорт на локальном порту (без подключения к БД),
+ * открывает заданное число подключений, затем отправляет по каждому из них запрос
+ * и считает, сколько подключений получили ответ за отведённое время.
+ * </p>
+ *
+ * <p>Запуск: {@code java -cp server.jar com.example.server.benchmark.ConnectionBenchmark [connections] [waitMillis]}</p>
+ */
+public class ConnectionBenchmark {
+    private static final int BASE_PORT = 18090;
+
+    /**
+     * Запрос, на который сервер отвечает без обращения к БД.
+     */
+    private static final byte[] REQUEST = new Frame(FrameType.REQUEST,
+            "{\"type\":\"Command\",\"name\":\"ping\",\"arguments\":[]}".getBytes(StandardCharsets.UTF_8)).encode();
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long waitMillis = args.length > 1 ? Long.parseLong(args[1]) : 3000;
+
+        List<String> results = new ArrayList<>();
+        int port = BASE_PORT;
+        for (ServerMode mode : ServerMode.values()) {
+            results.add(run(mode, port++, connections, waitMillis));
+        }
+
+        System.out.println();
+        System.out.printf("%-8s %8s %8s %10s%n", "mode", "opened", "served", "millis");
+        results.forEach(System.out::println);
+    }
+
+    private static String run(ServerMode mode, int port, int connections, long waitMillis) throws Exception {
+        ServerTransport server = Server.openTransport(mode, port);
+        Thread acceptor = new Thread(server, "benchmark-" + mode);
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        List<SocketChannel> channels = new ArrayList<>();
+        try {
+            for (int i = 0; i < connections; i++) {
+                try {
+                    channels.add(connect(port));
+                } catch (IOException e) {
+                    System.err.println(mode + ": stopped opening connections at " + i + ": " + e.getMessage());
+                    break;
+                }
+            }
+
+            long start = System.nanoTime();
+            for (SocketChannel channel : channels) {
+                channel.write(ByteBuffer.wrap(REQUEST));
+                channel.configureBlocking(false);
+            }
+
+            int served = 0;
+            boolean[] answered = new boolean[channels.size()];
+            ByteBuffer buffer = ByteBuffer.allocate(1024);
+            long deadline = start + waitMillis * 1_000_000L;
+            while (served < channels.size() && System.nanoTime() < deadline) {
+                for (int i = 0; i < channels.size(); i++) {
+                    if (answered[i]) continue;
+                    buffer.clear();
+                    if (channels.get(i).read(buffer) > 0) {
+                        answered[i] = true;
+                        served++;
+                    }
+                }
+                Thread.sleep(10);
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000L;
+
+            return String.format("%-8s %8d %8d %10d", mode, channels.size(), served, millis);
+        } finally {
+            for (SocketChannel channel : channels) {
+                channel.close();
+            }
+            server.close();
+        }
+    }
+
+    private static SocketChannel connect(int port) throws IOException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return SocketChannel.open(new InetSocketAddress("localhost", port));
+            } catch (ConnectException e) {
+                if (attempt > 50) throw e;
+                Thread.sleep(20);
+            }
+        }
+    }
+}
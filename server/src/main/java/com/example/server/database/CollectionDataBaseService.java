@@ -4,20 +4,102 @@ package com.example.server.database;
 import com.example.server.models.*;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.CopyOut;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * CollectionDataBaseService - класс для работы с датабазой
+ * <p>
+ * Каждый метод берёт соединение из {@link ConnectionPool} и возвращает его по завершении,
+ * поэтому запросы разных клиентов выполняются параллельно на разных соединениях.
+ * Подготовленные запросы берутся из кэша соединения ({@link PooledConnection#prepare(String)}).
+ * </p>
+ *
+ * <p>Вся коллекция загружается и сохраняется командой COPY в формате CSV ({@link LabWorkCsvCodec}),
+ * если она не отключена: тогда используются SELECT с курсором и пакетный INSERT. При загрузке строки
+ * передаются получателю по одной, упорядоченными по владельцу (см. {@link #LOAD_ORDER}).</p>
+ *
+ * <p>У каждой строки есть версия {@code row_version} из последовательности: её назначает БД при вставке
+ * и при каждом изменении строки. Методы записи сохраняют новую версию в элементе, что позволяет
+ * после перезапуска догрузить только изменённые строки.</p>
  */
 public class CollectionDataBaseService {
     private static final Logger logger = LogManager.getLogger();
 
-    private final Connection connection;
+    /**
+     * Размер порции данных, передаваемой в COPY за один вызов, в символах.
+     */
+    private static final int COPY_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Порядок строк при загрузке: сначала элементы без владельца, затем владельцы в порядке байтов
+     * их логинов (сравнение {@code "C"} совпадает с порядком кодовых точек), внутри владельца - по ID.
+     */
+    public static final String LOAD_ORDER = "ORDER BY owner_login COLLATE \"C\" NULLS FIRST, id";
+
+    /**
+     * Вставка элемента, ID которого назначает БД.
+     */
+    private static final String SQL_INSERT = """
+                INSERT INTO labworks (
+                    name, x, y, creation_date, minimal_point, tuned_in_works,
+                    difficulty, discipline_name, discipline_lecture_hours,
+                    discipline_practice_hours, discipline_self_study_hours,
+                    discipline_labs_count, owner_login
+                ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    /**
+     * Вставка элемента с уже назначенным ID. Повторная вставка той же строки пропускается.
+     */
+    private static final String SQL_INSERT_WITH_ID = """
+                INSERT INTO labworks (
+                    id, name, x, y, creation_date,
+                    minimal_point, tuned_in_works, difficulty,
+                    discipline_name, discipline_lecture_hours,
+                    discipline_practice_hours, discipline_self_study_hours,
+                    discipline_labs_count, owner_login
+                ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                ON CONFLICT (id) DO NOTHING
+            """;
+
+    /**
+     * Замена полей элемента, принадлежащего владельцу.
+     */
+    private static final String SQL_UPDATE_OWNED = """
+                UPDATE labworks SET
+                    name = ?, x = ?, y = ?, creation_date = ?,
+                    minimal_point = ?, tuned_in_works = ?, difficulty = ?,
+                    discipline_name = ?, discipline_lecture_hours = ?,
+                    discipline_practice_hours = ?, discipline_self_study_hours = ?,
+                    discipline_labs_count = ?
+                WHERE id = ? AND owner_login = ?
+            """;
 
-    public CollectionDataBaseService(Connection connection) {
-        this.connection = connection;
+    private final ConnectionPool pool;
+    private final boolean bulkCopy;
+    private final int fetchSize;
+
+    public CollectionDataBaseService(ConnectionPool pool) {
+        this(pool, true, 1000);
+    }
+
+    /**
+     * @param pool      пул соединений
+     * @param bulkCopy  загружать и сохранять всю коллекцию командой COPY
+     * @param fetchSize число строк, получаемых курсором за одно обращение при загрузке запросом SELECT
+     */
+    public CollectionDataBaseService(ConnectionPool pool, boolean bulkCopy, int fetchSize) {
+        this.pool = pool;
+        this.bulkCopy = bulkCopy;
+        this.fetchSize = fetchSize;
     }
 
     /**
@@ -44,8 +126,24 @@ public class CollectionDataBaseService {
                     );
                 """;
 
-        try (Statement stmt = connection.createStatement()) {
+        try (PooledConnection pooled = pool.borrow();
+             Statement stmt = pooled.getConnection().createStatement()) {
             stmt.execute(sql);
+            stmt.execute("CREATE INDEX IF NOT EXISTS labworks_owner_id_idx ON labworks (owner_login COLLATE \"C\", id)");
+            stmt.execute("CREATE SEQUENCE IF NOT EXISTS labworks_row_version_seq");
+            stmt.execute("ALTER TABLE labworks ADD COLUMN IF NOT EXISTS "
+                    + "row_version BIGINT NOT NULL DEFAULT nextval('labworks_row_version_seq')");
+            stmt.execute("""
+                        CREATE OR REPLACE FUNCTION labworks_next_row_version() RETURNS trigger AS $$
+                        BEGIN
+                            NEW.row_version := nextval('labworks_row_version_seq');
+                            RETURN NEW;
+                        END
+                        $$ LANGUAGE plpgsql
+                    """);
+            stmt.execute("DROP TRIGGER IF EXISTS labworks_row_version ON labworks");
+            stmt.execute("CREATE TRIGGER labworks_row_version BEFORE UPDATE ON labworks "
+                    + "FOR EACH ROW EXECUTE PROCEDURE labworks_next_row_version()");
             logger.info("Таблица labworks создана или уже существует");
         } catch (SQLException e) {
             logger.error("Не удалось создать таблицу labworks", e);
@@ -69,10 +167,11 @@ public class CollectionDataBaseService {
                         discipline_practice_hours, discipline_self_study_hours,
                         discipline_labs_count, owner_login
                     ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-                    RETURNING id
+                    RETURNING id, row_version
                 """;
 
-        try (PreparedStatement ps = connection.prepareStatement(sqlInsert)) {
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement ps = pooled.prepare(sqlInsert);
             ps.setString(1, newLabWork.getName());
             ps.setLong(2, newLabWork.getCoordinates().getX());
             ps.setInt(3, newLabWork.getCoordinates().getY());
@@ -102,6 +201,7 @@ public class CollectionDataBaseService {
                 if (rs.next()) {
                     int newId = rs.getInt(1);
                     newLabWork.setId(newId);
+                    newLabWork.setRowVersion(rs.getLong(2));
                 } else {
                     logger.error("Не удалось сохранить элемент:\n{}", newLabWork);
                     throw new RuntimeException("Save labwork failed");
@@ -129,9 +229,11 @@ public class CollectionDataBaseService {
                         discipline_practice_hours = ?, discipline_self_study_hours = ?,
                         discipline_labs_count = ?
                     WHERE id = ?
+                    RETURNING row_version
                 """;
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement ps = pooled.prepare(sql);
             ps.setString(1, updatedLabWork.getName());
             ps.setLong(2, updatedLabWork.getCoordinates().getX());
             ps.setInt(3, updatedLabWork.getCoordinates().getY());
@@ -157,9 +259,11 @@ public class CollectionDataBaseService {
 
             ps.setInt(13, updatedLabWork.getId());
 
-            int rows = ps.executeUpdate();
-            if (rows == 0) {
-                throw new RuntimeException("Update labwork failed");
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    throw new RuntimeException("Update labwork failed");
+                }
+                updatedLabWork.setRowVersion(rs.getLong(1));
             }
 
         } catch (SQLException ex) {
@@ -177,7 +281,8 @@ public class CollectionDataBaseService {
      */
     public void deleteLabWorkById(int id, String ownerLogin) throws RuntimeException {
         String sql = "DELETE FROM labworks WHERE id = ? AND owner_login = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement ps = pooled.prepare(sql);
             ps.setInt(1, id);
             ps.setString(2, ownerLogin);
             int rowsAffected = ps.executeUpdate();
@@ -190,6 +295,117 @@ public class CollectionDataBaseService {
         }
     }
 
+    /**
+     * Добавляет несколько элементов одной пачкой запросов в одной транзакции.
+     * <p>
+     * Либо добавляются все элементы, либо ни одного. Сгенерированные БД ID записываются в элементы
+     * в порядке их следования в списке.
+     * </p>
+     *
+     * @param labWorks   добавляемые элементы
+     * @param ownerLogin логин владельца
+     * @throws RuntimeException если элементы не удалось сохранить
+     */
+    public void addLabWorks(List<LabWork> labWorks, String ownerLogin) throws RuntimeException {
+        String sqlInsert = """
+                    INSERT INTO labworks (
+                        name, x, y, creation_date, minimal_point, tuned_in_works,
+                        difficulty, discipline_name, discipline_lecture_hours,
+                        discipline_practice_hours, discipline_self_study_hours,
+                        discipline_labs_count, owner_login
+                    ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """;
+
+        try (PooledConnection pooled = pool.borrow()) {
+            Connection connection = pooled.getConnection();
+            connection.setAutoCommit(false);
+            // Драйвер дописывает RETURNING id, row_version сам и возвращает ключи всех строк пачки по порядку
+            try (PreparedStatement ps = connection.prepareStatement(sqlInsert, new String[]{"id", "row_version"})) {
+                for (LabWork labWork : labWorks) {
+                    ps.setString(1, labWork.getName());
+                    ps.setLong(2, labWork.getCoordinates().getX());
+                    ps.setInt(3, labWork.getCoordinates().getY());
+                    ps.setString(4, labWork.getCreationDate());
+                    ps.setFloat(5, labWork.getMinimalPoint());
+                    ps.setInt(6, labWork.getTunedInWorks());
+                    ps.setString(7, labWork.getDifficulty().name());
+
+                    Discipline discipline = labWork.getDiscipline();
+                    if (discipline != null) {
+                        ps.setString(8, discipline.getName());
+                        ps.setLong(9, discipline.getLectureHours());
+                        ps.setLong(10, discipline.getPracticeHours());
+                        ps.setLong(11, discipline.getSelfStudyHours());
+                        ps.setLong(12, discipline.getLabsCount());
+                    } else {
+                        ps.setNull(8, Types.VARCHAR);
+                        ps.setNull(9, Types.BIGINT);
+                        ps.setNull(10, Types.BIGINT);
+                        ps.setNull(11, Types.BIGINT);
+                        ps.setNull(12, Types.BIGINT);
+                    }
+
+                    ps.setString(13, ownerLogin);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                int[] ids = new int[labWorks.size()];
+                long[] rowVersions = new long[labWorks.size()];
+                int count = 0;
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    while (rs.next() && count < ids.length) {
+                        ids[count] = rs.getInt(1);
+                        rowVersions[count++] = rs.getLong(2);
+                    }
+                }
+                if (count != ids.length) {
+                    logger.error("БД вернула {} ID вместо {}", count, ids.length);
+                    throw new RuntimeException("Save labworks failed");
+                }
+                connection.commit();
+                for (int i = 0; i < ids.length; i++) {
+                    labWorks.get(i).setId(ids[i]);
+                    labWorks.get(i).setRowVersion(rowVersions[i]);
+                }
+            }
+        } catch (SQLException ex) {
+            logger.error("Ошибка при добавлении {} элементов: {}", labWorks.size(), ex.getMessage());
+            throw new RuntimeException("Add labworks failed");
+        }
+    }
+
+    /**
+     * Удаляет одним запросом все элементы пользователя с ID меньше заданного.
+     *
+     * @param id         граница ID (не включается)
+     * @param ownerLogin логин пользователя
+     * @return ID удалённых элементов в порядке возрастания
+     * @throws RuntimeException если удаление не выполнено
+     */
+    public List<Integer> deleteLabWorksLowerThan(int id, String ownerLogin) throws RuntimeException {
+        String sql = "DELETE FROM labworks WHERE owner_login = ? AND id < ? RETURNING id";
+        try (PooledConnection pooled = pool.borrow()) {
+            Connection connection = pooled.getConnection();
+            connection.setAutoCommit(false);
+            PreparedStatement ps = pooled.prepare(sql);
+            ps.setString(1, ownerLogin);
+            ps.setInt(2, id);
+            List<Integer> removedIds = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    removedIds.add(rs.getInt(1));
+                }
+            }
+            connection.commit();
+            Collections.sort(removedIds);
+            return removedIds;
+        } catch (SQLException ex) {
+            logger.error("Ошибка при удалении элементов с ID меньше {}: {}", id, ex.getMessage());
+            throw new RuntimeException("Delete labworks failed");
+        }
+    }
+
     /**
      * Очищает коллекцию для конкретного пользователя.
      *
@@ -198,7 +414,8 @@ public class CollectionDataBaseService {
      */
     public void clearCollection(String login) throws RuntimeException {
         String sql = "DELETE FROM labworks WHERE owner_login = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement stmt = pooled.prepare(sql);
             stmt.setString(1, login);
             stmt.executeUpdate();
         } catch (SQLException ex) {
@@ -207,71 +424,439 @@ public class CollectionDataBaseService {
         }
     }
     /**
-     * Создает объект {@link LabWork} на основе данных из {@link ResultSet}.
+     * Применяет изменения из журнала в указанном порядке в одной транзакции. ID вставляемых элементов
+     * уже назначены, повторная вставка той же строки пропускается.
+     * <p>
+     * Если изменение нарушает ограничения таблицы, оно отбрасывается с записью в лог,
+     * см. {@link #executeGroup(List)}. При других ошибках не применяется ни одно изменение.
+     * </p>
      *
-     * @param rs объект {@link ResultSet}, содержащий данные строки таблицы
-     * @return объект типа {@link LabWork}, собранный из текущей строки результата
-     * @throws SQLException если произошла ошибка при чтении данных из ResultSet
-     * @throws RuntimeException если значение enum {@code difficulty} не поддерживается
-     */
-    private LabWork createFromResultSet(ResultSet rs) throws SQLException, RuntimeException {
-        int id = rs.getInt("id");
-        String name = rs.getString("name");
-        long x = rs.getLong("x");
-        int y = rs.getInt("y");
-        String creationDate = rs.getString("creation_date");
-        float minimalPoint = rs.getFloat("minimal_point");
-        int tunedInWorks = rs.getInt("tuned_in_works");
-        Difficulty difficulty = Difficulty.valueOf(rs.getString("difficulty"));
-
-        String disciplineName = rs.getString("discipline_name");
-        Long lectureHours = rs.getObject("discipline_lecture_hours", Long.class);
-        Long practiceHours = rs.getObject("discipline_practice_hours", Long.class);
-        long selfStudyHours = rs.getLong("discipline_self_study_hours");
-        Integer labsCount = rs.getObject("discipline_labs_count", Integer.class);
-
-        Discipline discipline = null;
-        if (disciplineName != null) {
-            discipline = new Discipline(disciplineName, lectureHours, practiceHours, selfStudyHours, labsCount);
+     * @param mutations изменения
+     * @return отброшенные изменения в исходном порядке
+     * @throws RuntimeException если изменения не удалось применить
+     */
+    public List<LabWorkMutation> applyMutations(List<LabWorkMutation> mutations) throws RuntimeException {
+        try (PooledConnection pooled = pool.borrow()) {
+            List<List<Integer>> results = executeGroup(pooled, mutations, false);
+            List<LabWorkMutation> rejected = new ArrayList<>();
+            for (int i = 0; i < mutations.size(); i++) {
+                if (results.get(i) == null) {
+                    rejected.add(mutations.get(i));
+                }
+            }
+            return rejected;
+        } catch (SQLException ex) {
+            logger.error("Не удалось применить {} изменений: {}", mutations.size(), ex.getMessage());
+            throw new RuntimeException("Apply mutations failed");
         }
+    }
 
-        Coordinates coordinates = new Coordinates(x, y);
-        LabWork labWork = new LabWork(id, name, coordinates, creationDate, minimalPoint, tunedInWorks, difficulty, discipline);
-        labWork.setOwnerLogin(rs.getString("owner_login"));
+    /**
+     * Выполняет изменения разных клиентов в указанном порядке в одной транзакции, ID вставляемых
+     * элементов назначает БД.
+     * <p>
+     * Подряд идущие изменения одного вида отправляются одной пачкой запросов. Если изменение нарушает
+     * ограничения таблицы (класс ошибок SQL 22 или 23), транзакция повторяется с точкой сохранения
+     * на каждое изменение: такие изменения отбрасываются, остальные применяются. Вставленным и изменённым
+     * элементам записываются ID и версии строк, см. {@link #executeRun(PooledConnection, List, boolean)}.
+     * </p>
+     *
+     * @param mutations изменения
+     * @return для каждого изменения ID затронутых им строк в порядке возрастания
+     * или {@code null}, если изменение отброшено
+     * @throws SQLException если транзакция не выполнена, тогда не применяется ни одно изменение
+     */
+    List<List<Integer>> executeGroup(List<LabWorkMutation> mutations) throws SQLException {
+        try (PooledConnection pooled = pool.borrow()) {
+            return executeGroup(pooled, mutations, true);
+        }
+    }
 
-        return labWork;
+    private List<List<Integer>> executeGroup(PooledConnection pooled, List<LabWorkMutation> mutations,
+                                             boolean generateIds) throws SQLException {
+        Connection connection = pooled.getConnection();
+        connection.setAutoCommit(false);
+        List<List<Integer>> results = new ArrayList<>(mutations.size());
+        try {
+            int from = 0;
+            while (from < mutations.size()) {
+                int to = from + 1;
+                while (to < mutations.size() && mutations.get(to).getKind() == mutations.get(from).getKind()) {
+                    to++;
+                }
+                results.addAll(executeRun(pooled, mutations.subList(from, to), generateIds));
+                from = to;
+            }
+        } catch (SQLException ex) {
+            if (!isDataError(ex)) {
+                throw ex;
+            }
+            connection.rollback();
+            logger.warn("Изменение нарушает ограничения БД ({}), изменения применяются по одному", ex.getMessage());
+            results.clear();
+            for (LabWorkMutation mutation : mutations) {
+                Savepoint savepoint = connection.setSavepoint();
+                try {
+                    results.add(executeRun(pooled, List.of(mutation), generateIds).get(0));
+                    connection.releaseSavepoint(savepoint);
+                } catch (SQLException e) {
+                    if (!isDataError(e)) {
+                        throw e;
+                    }
+                    connection.rollback(savepoint);
+                    results.add(null);
+                    logger.error("Изменение {} отброшено: {}", mutation, e.getMessage());
+                }
+            }
+        }
+        connection.commit();
+        return results;
     }
 
     /**
-     * Загружает всю коллекцию из БД.
+     * Выполняет изменения одного вида одной пачкой запросов.
+     * <p>
+     * Если ID назначает БД, вставленным и изменённым элементам записываются ID и версии строк.
+     * Изменения из журнала не трогают элементы: они уже опубликованы в снимке коллекции,
+     * который не должен меняться, а устаревшие версии строк сверяются с БД при следующей загрузке.
+     * </p>
      *
-     * @return список LabWork с владельцами
-     * @throws CannotUploadCollectionException если загрузка провалилась
+     * @return для каждого изменения ID затронутых им строк
      */
+    private List<List<Integer>> executeRun(PooledConnection pooled, List<LabWorkMutation> run,
+                                           boolean generateIds) throws SQLException {
+        Connection connection = pooled.getConnection();
+        List<List<Integer>> results = new ArrayList<>(run.size());
+        switch (run.get(0).getKind()) {
+            case INSERT -> {
+                // Драйвер дописывает RETURNING и возвращает строки всех запросов пачки по порядку
+                String sql = generateIds ? SQL_INSERT : SQL_INSERT_WITH_ID;
+                try (PreparedStatement ps = connection.prepareStatement(sql, new String[]{"id", "row_version"})) {
+                    for (LabWorkMutation mutation : run) {
+                        for (LabWork labWork : mutation.getLabWorks()) {
+                            if (generateIds) {
+                                setFields(ps, 1, labWork);
+                                ps.setString(13, mutation.getOwnerLogin());
+                            } else {
+                                ps.setInt(1, labWork.getId());
+                                setFields(ps, 2, labWork);
+                                ps.setString(14, mutation.getOwnerLogin());
+                            }
+                            ps.addBatch();
+                        }
+                    }
+                    int[] counts = ps.executeBatch();
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        int statement = 0;
+                        for (LabWorkMutation mutation : run) {
+                            List<Integer> ids = new ArrayList<>(mutation.getLabWorks().size());
+                            for (LabWork labWork : mutation.getLabWorks()) {
+                                if (counts[statement++] > 0) {
+                                    nextKey(rs);
+                                    if (generateIds) {
+                                        labWork.setId(rs.getInt(1));
+                                        labWork.setRowVersion(rs.getLong(2));
+                                    }
+                                    ids.add(rs.getInt(1));
+                                }
+                            }
+                            results.add(ids);
+                        }
+                    }
+                }
+            }
+            case UPDATE -> {
+                try (PreparedStatement ps = connection.prepareStatement(SQL_UPDATE_OWNED, new String[]{"row_version"})) {
+                    for (LabWorkMutation mutation : run) {
+                        setFields(ps, 1, mutation.getLabWorks().get(0));
+                        ps.setInt(13, mutation.getId());
+                        ps.setString(14, mutation.getOwnerLogin());
+                        ps.addBatch();
+                    }
+                    int[] counts = ps.executeBatch();
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        for (int i = 0; i < run.size(); i++) {
+                            LabWorkMutation mutation = run.get(i);
+                            if (counts[i] > 0) {
+                                nextKey(rs);
+                                if (generateIds) {
+                                    mutation.getLabWorks().get(0).setRowVersion(rs.getLong(1));
+                                }
+                                results.add(List.of(mutation.getId()));
+                            } else {
+                                results.add(List.of());
+                            }
+                        }
+                    }
+                }
+            }
+            case DELETE -> {
+                PreparedStatement ps = pooled.prepare("DELETE FROM labworks WHERE id = ? AND owner_login = ?");
+                for (LabWorkMutation mutation : run) {
+                    ps.setInt(1, mutation.getId());
+                    ps.setString(2, mutation.getOwnerLogin());
+                    ps.addBatch();
+                }
+                int[] counts = ps.executeBatch();
+                for (int i = 0; i < run.size(); i++) {
+                    results.add(counts[i] > 0 ? List.of(run.get(i).getId()) : List.of());
+                }
+            }
+            case DELETE_LOWER, CLEAR -> {
+                boolean lower = run.get(0).getKind() == LabWorkMutation.Kind.DELETE_LOWER;
+                String sql = lower
+                        ? "DELETE FROM labworks WHERE owner_login = ? AND id < ?"
+                        : "DELETE FROM labworks WHERE owner_login = ?";
+                try (PreparedStatement ps = connection.prepareStatement(sql, new String[]{"id"})) {
+                    for (LabWorkMutation mutation : run) {
+                        ps.setString(1, mutation.getOwnerLogin());
+                        if (lower) {
+                            ps.setInt(2, mutation.getId());
+                        }
+                        ps.addBatch();
+                    }
+                    int[] counts = ps.executeBatch();
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        for (int count : counts) {
+                            List<Integer> ids = new ArrayList<>(count);
+                            for (int i = 0; i < count; i++) {
+                                nextKey(rs);
+                                ids.add(rs.getInt(1));
+                            }
+                            Collections.sort(ids);
+                            results.add(ids);
+                        }
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private static void nextKey(ResultSet rs) throws SQLException {
+        if (!rs.next()) {
+            throw new SQLException("Database returned fewer rows than it reported");
+        }
+    }
+
     /**
-     * Загружает все элементы LabWork из базы данных.
-     *
-     * @return список элементов LabWorkWithOwner
+     * Записывает поля элемента от {@code name} до {@code discipline_labs_count} в параметры запроса,
+     * начиная с {@code from}.
      */
-    public List<LabWork> loadInMemory() throws RuntimeException {
-        String sql = """
-                    SELECT * FROM labworks;
-                """;
-        List<LabWork> loaded = new ArrayList<>();
+    private static void setFields(PreparedStatement ps, int from, LabWork labWork) throws SQLException {
+        ps.setString(from, labWork.getName());
+        ps.setLong(from + 1, labWork.getCoordinates().getX());
+        ps.setInt(from + 2, labWork.getCoordinates().getY());
+        ps.setString(from + 3, labWork.getCreationDate());
+        ps.setFloat(from + 4, labWork.getMinimalPoint());
+        ps.setInt(from + 5, labWork.getTunedInWorks());
+        ps.setString(from + 6, labWork.getDifficulty().name());
 
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        Discipline discipline = labWork.getDiscipline();
+        if (discipline != null) {
+            ps.setString(from + 7, discipline.getName());
+            ps.setLong(from + 8, discipline.getLectureHours());
+            ps.setLong(from + 9, discipline.getPracticeHours());
+            ps.setLong(from + 10, discipline.getSelfStudyHours());
+            ps.setLong(from + 11, discipline.getLabsCount());
+        } else {
+            ps.setNull(from + 7, Types.VARCHAR);
+            ps.setNull(from + 8, Types.BIGINT);
+            ps.setNull(from + 9, Types.BIGINT);
+            ps.setNull(from + 10, Types.BIGINT);
+            ps.setNull(from + 11, Types.BIGINT);
+        }
+    }
 
-            while (rs.next()) {
-                loaded.add(createFromResultSet(rs));
+    /**
+     * Проверяет, что элемент удовлетворяет ограничениям таблицы labworks (см. {@link #init()}),
+     * то есть его вставка или изменение не будет отброшено БД.
+     */
+    public static boolean satisfiesConstraints(LabWork labWork) {
+        return labWork != null
+                && labWork.validate()
+                && labWork.getCoordinates().validate()
+                && labWork.getTunedInWorks() >= 0
+                && isStorableText(labWork.getName())
+                && isStorableText(labWork.getCreationDate())
+                && (labWork.getDiscipline() == null || isStorableText(labWork.getDiscipline().getName()));
+    }
+
+    /**
+     * Строки PostgreSQL не могут содержать символ с кодом 0.
+     */
+    private static boolean isStorableText(String value) {
+        return value == null || value.indexOf('\0') < 0;
+    }
+
+    /**
+     * Проверяет, вызвана ли ошибка самими данными (классы SQLSTATE 22 и 23), а не соединением или БД.
+     */
+    private static boolean isDataError(SQLException ex) {
+        for (SQLException e = ex; e != null; e = e.getNextException()) {
+            String state = e.getSQLState();
+            if (state != null && (state.startsWith("22") || state.startsWith("23"))) {
+                return true;
             }
+        }
+        return false;
+    }
+
+    /**
+     * Загружает все элементы LabWork из базы данных, передавая их получателю по мере чтения
+     * в порядке {@link #LOAD_ORDER}.
+     *
+     * @param consumer получатель элементов с владельцами
+     * @throws RuntimeException если загрузка провалилась
+     */
+    public void loadInMemory(Consumer<LabWork> consumer) throws RuntimeException {
+        if (bulkCopy) {
+            loadByCopy(consumer);
+        } else {
+            loadBySelect(consumer);
+        }
+    }
+
+    /**
+     * Загружает все элементы запросом SELECT через серверный курсор: строки приходят порциями
+     * по {@code fetchSize}, поэтому в памяти не копится весь результат запроса.
+     *
+     * @param consumer получатель элементов с владельцами
+     * @throws RuntimeException если загрузка провалилась
+     */
+    public void loadBySelect(Consumer<LabWork> consumer) throws RuntimeException {
+        String sql = "SELECT " + LabWorkCsvCodec.LOAD_COLUMNS + " FROM labworks " + LOAD_ORDER;
 
+        try (PooledConnection pooled = pool.borrow()) {
+            Connection connection = pooled.getConnection();
+            // драйвер PostgreSQL использует курсор только вне режима автофиксации
+            connection.setAutoCommit(false);
+            try (Statement stmt = connection.createStatement()) {
+                stmt.setFetchSize(fetchSize);
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        consumer.accept(createLabWorkFromCurrentRow(rs));
+                    }
+                }
+            }
+            connection.commit();
         } catch (SQLException | RuntimeException ex) {
             logger.error("Не удалось загрузить коллекцию", ex);
             throw new RuntimeException("Upload labwork failed");
         }
+    }
+
+    /**
+     * Загружает все элементы командой {@code COPY ... TO STDOUT}.
+     * <p>
+     * Строки разбираются по мере получения от сервера, без промежуточного буфера на всю таблицу.
+     * </p>
+     *
+     * @param consumer получатель элементов с владельцами
+     * @throws RuntimeException если загрузка провалилась
+     */
+    public void loadByCopy(Consumer<LabWork> consumer) throws RuntimeException {
+        String sql = "COPY (SELECT " + LabWorkCsvCodec.LOAD_COLUMNS + " FROM labworks " + LOAD_ORDER
+                + ") TO STDOUT WITH (FORMAT csv)";
+
+        try (PooledConnection pooled = pool.borrow()) {
+            CopyOut copyOut = copyManager(pooled).copyOut(sql);
+            try {
+                byte[] row;
+                while ((row = copyOut.readFromCopy()) != null) {
+                    consumer.accept(LabWorkCsvCodec.decode(new String(row, StandardCharsets.UTF_8)));
+                }
+            } finally {
+                if (copyOut.isActive()) {
+                    copyOut.cancelCopy();
+                }
+            }
+        } catch (SQLException | RuntimeException ex) {
+            logger.error("Не удалось загрузить коллекцию через COPY", ex);
+            throw new RuntimeException("Upload labwork failed");
+        }
+    }
 
-        return loaded;
+    /**
+     * Возвращает сводку версий всех строк таблицы.
+     *
+     * @return число строк, наибольшая версия и сумма версий
+     * @throws RuntimeException если запрос не выполнен
+     */
+    public RowVersionStamp rowVersionStamp() throws RuntimeException {
+        String sql = "SELECT count(*), coalesce(max(row_version), 0), coalesce(sum(row_version), 0) FROM labworks";
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement ps = pooled.prepare(sql);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                // сумма в БД не переполняется, младшие 64 бита совпадают с суммой в long
+                return new RowVersionStamp(rs.getLong(1), rs.getLong(2), rs.getBigDecimal(3).toBigInteger().longValue());
+            }
+        } catch (SQLException ex) {
+            logger.error("Не удалось получить версии строк: {}", ex.getMessage());
+            throw new RuntimeException("Read row versions failed");
+        }
+    }
+
+    /**
+     * Передаёт получателю ID и версию каждой строки таблицы. Строки читаются курсором.
+     *
+     * @param consumer получатель пар ID - версия
+     * @throws RuntimeException если запрос не выполнен
+     */
+    public void loadRowVersions(RowVersionConsumer consumer) throws RuntimeException {
+        String sql = "SELECT id, row_version FROM labworks";
+        try (PooledConnection pooled = pool.borrow()) {
+            Connection connection = pooled.getConnection();
+            connection.setAutoCommit(false);
+            try (Statement stmt = connection.createStatement()) {
+                stmt.setFetchSize(Math.max(fetchSize, 10_000));
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        consumer.accept(rs.getInt(1), rs.getLong(2));
+                    }
+                }
+            }
+            connection.commit();
+        } catch (SQLException ex) {
+            logger.error("Не удалось получить версии строк: {}", ex.getMessage());
+            throw new RuntimeException("Read row versions failed");
+        }
+    }
+
+    /**
+     * Загружает строки с указанными ID.
+     *
+     * @param ids      ID строк
+     * @param consumer получатель элементов с владельцами
+     * @throws RuntimeException если запрос не выполнен
+     */
+    public void loadByIds(int[] ids, Consumer<LabWork> consumer) throws RuntimeException {
+        String sql = "SELECT " + LabWorkCsvCodec.LOAD_COLUMNS + " FROM labworks WHERE id = ANY(?)";
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement ps = pooled.prepare(sql);
+            Integer[] boxed = new Integer[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                boxed[i] = ids[i];
+            }
+            ps.setArray(1, pooled.getConnection().createArrayOf("integer", boxed));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(createLabWorkFromCurrentRow(rs));
+                }
+            }
+        } catch (SQLException ex) {
+            logger.error("Не удалось загрузить {} элементов по ID: {}", ids.length, ex.getMessage());
+            throw new RuntimeException("Upload labwork failed");
+        }
+    }
+
+    /**
+     * Получатель пар ID - версия строки.
+     */
+    @FunctionalInterface
+    public interface RowVersionConsumer {
+        void accept(int id, long rowVersion);
     }
 
     /**
@@ -304,6 +889,7 @@ public class CollectionDataBaseService {
                 minimalPoint, tunedInWorks, difficulty, discipline
         );
         labWork.setOwnerLogin(ownerLogin);
+        labWork.setRowVersion(rs.getLong(15));
 
         return labWork;
     }
@@ -317,7 +903,8 @@ public class CollectionDataBaseService {
      */
     public boolean isOwner(int id, String login) {
         String sql = "SELECT COUNT(*) FROM labworks WHERE id = ? AND owner_login = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement ps = pooled.prepare(sql);
             ps.setInt(1, id);
             ps.setString(2, login);
 
@@ -333,22 +920,88 @@ public class CollectionDataBaseService {
     }
 
     /**
-     * Сохраняет все элементы коллекции для пользователя.
+     * Сохраняет все элементы коллекции для пользователя, заменяя его прежние записи.
      *
      * @param collection коллекция LabWork
      * @param ownerLogin логин пользователя
+     * @throws RuntimeException если сохранить не удалось
      */
+    public void saveAll(Collection<LabWork> collection, String ownerLogin) throws RuntimeException {
+        if (bulkCopy) {
+            saveByCopy(collection, ownerLogin);
+        } else {
+            saveByBatch(collection, ownerLogin);
+        }
+    }
+
     /**
-     * Сохраняет всю коллекцию в БД.
+     * Сохраняет элементы удалением прежних записей и пакетным INSERT.
+     *
+     * @param collection коллекция LabWork
+     * @param ownerLogin логин пользователя
+     * @throws RuntimeException если сохранить не удалось
      */
-    public void saveAll(Collection<LabWork> collection, String ownerLogin) throws RuntimeException {
+    public void saveByBatch(Collection<LabWork> collection, String ownerLogin) throws RuntimeException {
         truncate(ownerLogin); // очищаем старые данные
         insertAll(collection, ownerLogin); // вставляем новые
     }
 
+    /**
+     * Сохраняет элементы удалением прежних записей и командой {@code COPY ... FROM STDIN}
+     * в одной транзакции. Данные передаются порциями по мере кодирования.
+     *
+     * @param collection коллекция LabWork
+     * @param ownerLogin логин пользователя
+     * @throws RuntimeException если сохранить не удалось
+     */
+    public void saveByCopy(Collection<LabWork> collection, String ownerLogin) throws RuntimeException {
+        String sqlDelete = "DELETE FROM labworks WHERE owner_login = ?";
+        String sqlCopy = "COPY labworks (" + LabWorkCsvCodec.COLUMNS + ") FROM STDIN WITH (FORMAT csv)";
+
+        try (PooledConnection pooled = pool.borrow()) {
+            Connection connection = pooled.getConnection();
+            connection.setAutoCommit(false);
+            PreparedStatement ps = pooled.prepare(sqlDelete);
+            ps.setString(1, ownerLogin);
+            ps.executeUpdate();
+
+            CopyIn copyIn = copyManager(pooled).copyIn(sqlCopy);
+            try {
+                StringBuilder chunk = new StringBuilder(COPY_CHUNK_SIZE + 1024);
+                for (LabWork labWork : collection) {
+                    LabWorkCsvCodec.encode(labWork, ownerLogin, chunk);
+                    if (chunk.length() >= COPY_CHUNK_SIZE) {
+                        writeChunk(copyIn, chunk);
+                    }
+                }
+                writeChunk(copyIn, chunk);
+                copyIn.endCopy();
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+            connection.commit();
+        } catch (SQLException ex) {
+            logger.error("Не удалось сохранить коллекцию через COPY", ex);
+            throw new RuntimeException("Save labworks failed");
+        }
+    }
+
+    private static void writeChunk(CopyIn copyIn, StringBuilder chunk) throws SQLException {
+        byte[] bytes = chunk.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        chunk.setLength(0);
+    }
+
+    private static CopyManager copyManager(PooledConnection pooled) throws SQLException {
+        return pooled.getConnection().unwrap(PGConnection.class).getCopyAPI();
+    }
+
     private void truncate(String ownerLogin) throws RuntimeException {
         String sql = "DELETE FROM labworks WHERE owner_login = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement ps = pooled.prepare(sql);
             ps.setString(1, ownerLogin);
             ps.executeUpdate();
         } catch (SQLException ex) {
@@ -379,7 +1032,8 @@ public class CollectionDataBaseService {
                     ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
                 """;
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement ps = pooled.prepare(sql);
             for (LabWork labWork : collection) {
                 ps.setInt(1, labWork.getId());
                 ps.setString(2, labWork.getName());
@@ -430,7 +1084,8 @@ public class CollectionDataBaseService {
     public Set<String> getAllOwners() throws SQLException {
         Set<String> owners = new HashSet<>();
         String sql = "SELECT DISTINCT owner_login FROM labworks";
-        try (Statement stmt = connection.createStatement();
+        try (PooledConnection pooled = pool.borrow();
+             Statement stmt = pooled.getConnection().createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
@@ -0,0 +1,355 @@
+package com.example.server.database;
+
+import com.jcraft.jsch.JSchException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ConnectionPool - ограниченный пул JDBC-соединений к БД.
+ * <p>
+ * Держит от {@code minSize} до {@code maxSize} соединений. Соединение выдаётся методом {@link #borrow()}
+ * и возвращается в пул закрытием {@link PooledConnection}. Если все соединения заняты, вызывающий поток
+ * ждёт освобождения не дольше заданного времени.
+ * </p>
+ *
+ * <p>Перед выдачей соединение, простоявшее без дела дольше {@link #VALIDATE_AFTER_IDLE_MILLIS} мс,
+ * проверяется запросом к БД. Неисправное соединение закрывается, а вместо него через
+ * {@link DataBaseConnector#openConnection()} открывается новое; при этом восстанавливается и SSH-туннель,
+ * если он оборвался.</p>
+ *
+ * <p>У каждого соединения есть свой {@link StatementCache}, поэтому подготовленные запросы переживают
+ * возврат соединения в пул.</p>
+ *
+ * <p>Пул считает время ожидания соединений, пиковое число занятых соединений, таймауты,
+ * заменённые соединения и попадания в кэши подготовленных запросов.</p>
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * Соединения, использованные не раньше этого срока, выдаются без проверки.
+     */
+    static final long VALIDATE_AFTER_IDLE_MILLIS = 500;
+
+    /**
+     * Время ожидания ответа БД при проверке соединения, в секундах.
+     */
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final DataBaseConnector connector;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutNanos;
+    private final int statementCacheSize;
+
+    /**
+     * Разрешения на занятие соединения: их ровно {@code maxSize}.
+     */
+    private final Semaphore permits;
+    private final Deque<IdleConnection> idle = new ArrayDeque<>();
+    private int open;
+    private volatile boolean closed;
+
+    private int active;
+    private int peakActive;
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong replaced = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+    private final AtomicLong statementEvictions = new AtomicLong();
+
+    /**
+     * Создаёт пул и сразу открывает {@code minSize} соединений.
+     *
+     * @param connector          подключатель, открывающий соединения через SSH-туннель
+     * @param minSize            число соединений, открываемых заранее
+     * @param maxSize            максимальное число одновременно открытых соединений
+     * @param borrowTimeout      максимальное время ожидания свободного соединения
+     * @param statementCacheSize максимальное число подготовленных запросов на одно соединение
+     * @throws JSchException если не удалось создать SSH-туннель
+     * @throws SQLException  если не удалось открыть соединения
+     */
+    public ConnectionPool(DataBaseConnector connector, int minSize, int maxSize, Duration borrowTimeout,
+                          int statementCacheSize) throws JSchException, SQLException {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.connector = connector;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutNanos = borrowTimeout.toNanos();
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        for (int i = 0; i < minSize; i++) {
+            IdleConnection connection = wrap(connector.openConnection());
+            created.incrementAndGet();
+            synchronized (this) {
+                open++;
+                idle.push(connection);
+            }
+        }
+        logger.info("Пул соединений создан: min={}, max={}", minSize, maxSize);
+    }
+
+    /**
+     * Выдаёт исправное соединение, при необходимости дожидаясь освобождения.
+     *
+     * @return соединение, которое нужно закрыть после использования
+     * @throws SQLTransientConnectionException если свободное соединение не появилось за отведённое время
+     * @throws SQLException                    если не удалось открыть новое соединение
+     */
+    public PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLTransientConnectionException("Timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            IdleConnection connection = takeValidConnection();
+            synchronized (this) {
+                active++;
+                peakActive = Math.max(peakActive, active);
+            }
+            borrowed.incrementAndGet();
+            return new PooledConnection(this, connection.connection, connection.statements);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Возвращает соединение в пул. Вызывается из {@link PooledConnection#close()}.
+     */
+    void release(Connection connection, StatementCache statements) {
+        boolean reusable;
+        try {
+            reusable = !closed && !connection.isClosed();
+            if (reusable && !connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.warn("Соединение не удалось вернуть в исходное состояние: {}", e.getMessage());
+            reusable = false;
+        }
+
+        synchronized (this) {
+            active--;
+            if (reusable) {
+                idle.push(new IdleConnection(connection, statements, System.nanoTime()));
+            } else {
+                open--;
+            }
+        }
+        if (!reusable) {
+            statements.close();
+            closeQuietly(connection);
+        }
+        permits.release();
+    }
+
+    /**
+     * Берёт простаивающее соединение (последнее возвращённое) или открывает новое.
+     * Вызывается, когда разрешение на соединение уже получено.
+     */
+    private IdleConnection takeValidConnection() throws SQLException {
+        IdleConnection candidate;
+        synchronized (this) {
+            candidate = idle.poll();
+            if (candidate == null) {
+                open++;
+            }
+        }
+        if (candidate != null) {
+            if (System.nanoTime() - candidate.releasedAt < TimeUnit.MILLISECONDS.toNanos(VALIDATE_AFTER_IDLE_MILLIS)
+                    || isValid(candidate.connection)) {
+                return candidate;
+            }
+            logger.warn("Соединение с БД неисправно и будет заменено");
+            candidate.statements.close();
+            closeQuietly(candidate.connection);
+            replaced.incrementAndGet();
+        }
+
+        try {
+            IdleConnection connection = wrap(connector.openConnection());
+            created.incrementAndGet();
+            return connection;
+        } catch (SQLException | JSchException | RuntimeException e) {
+            synchronized (this) {
+                open--;
+            }
+            logger.error("Не удалось открыть соединение с БД: {}", e.getMessage());
+            if (e instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw new SQLException("Reconnect failed", "08001", e);
+        }
+    }
+
+    private IdleConnection wrap(Connection connection) {
+        StatementCache statements = new StatementCache(connection, statementCacheSize,
+                statementHits, statementMisses, statementEvictions);
+        return new IdleConnection(connection, statements, System.nanoTime());
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void recordWait(long nanos) {
+        totalWaitNanos.addAndGet(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.debug("Ошибка при закрытии соединения: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Возвращает число выданных сейчас соединений.
+     */
+    public synchronized int getActive() {
+        return active;
+    }
+
+    /**
+     * Возвращает число простаивающих соединений.
+     */
+    public synchronized int getIdle() {
+        return idle.size();
+    }
+
+    /**
+     * Возвращает наибольшее число одновременно выданных соединений.
+     */
+    public synchronized int getPeakActive() {
+        return peakActive;
+    }
+
+    /**
+     * Возвращает среднее время ожидания соединения в миллисекундах.
+     */
+    public double getAverageWaitMillis() {
+        long count = borrowed.get() + timeouts.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / count;
+    }
+
+    /**
+     * Возвращает наибольшее время ожидания соединения в миллисекундах.
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    /**
+     * Возвращает число соединений, закрытых при проверке и открытых заново.
+     */
+    public long getReplaced() {
+        return replaced.get();
+    }
+
+    public long getStatementHits() {
+        return statementHits.get();
+    }
+
+    public long getStatementMisses() {
+        return statementMisses.get();
+    }
+
+    /**
+     * Возвращает долю подготовленных запросов, взятых из кэша, в процентах.
+     */
+    public long getStatementHitRate() {
+        long lookups = statementHits.get() + statementMisses.get();
+        return lookups == 0 ? 0 : statementHits.get() * 100 / lookups;
+    }
+
+    /**
+     * Закрывает простаивающие соединения. Выданные соединения закрываются при возврате.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (this) {
+            IdleConnection connection;
+            while ((connection = idle.poll()) != null) {
+                connection.statements.close();
+                closeQuietly(connection.connection);
+                open--;
+            }
+        }
+        logger.info("Пул соединений закрыт");
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ConnectionPool{" +
+                "open=" + open + "/" + maxSize +
+                ", min=" + minSize +
+                ", active=" + active +
+                ", idle=" + idle.size() +
+                ", peakActive=" + peakActive +
+                ", borrowed=" + borrowed.get() +
+                ", avgWaitMs=" + String.format("%.3f", getAverageWaitMillis()) +
+                ", maxWaitMs=" + String.format("%.3f", getMaxWaitMillis()) +
+                ", timeouts=" + timeouts.get() +
+                ", created=" + created.get() +
+                ", replaced=" + replaced.get() +
+                ", statementHits=" + statementHits.get() +
+                ", statementMisses=" + statementMisses.get() +
+                ", statementHitRate=" + getStatementHitRate() + "%" +
+                ", statementEvictions=" + statementEvictions.get() +
+                '}';
+    }
+
+    private static final class IdleConnection {
+        final Connection connection;
+        final StatementCache statements;
+        final long releasedAt;
+
+        IdleConnection(Connection connection, StatementCache statements, long releasedAt) {
+            this.connection = connection;
+            this.statements = statements;
+            this.releasedAt = releasedAt;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.server.database;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * CredentialCache - ограниченный по размеру кэш логин → хэш пароля с временем жизни записей.
+ * <p>
+ * При переполнении вытесняется запись, к которой дольше всего не обращались.
+ * Запись, прожившая дольше заданного времени, считается отсутствующей и перечитывается из БД.
+ * Счётчики попаданий, промахов и вытеснений помогают подобрать размер кэша.
+ * </p>
+ */
+public class CredentialCache {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    /**
+     * @param maxSize максимальное количество записей
+     * @param ttl     время жизни записи с момента её добавления
+     */
+    public CredentialCache(int maxSize, Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > CredentialCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Возвращает хэш пароля из кэша.
+     *
+     * @param login логин пользователя
+     * @return хэш пароля или {@code null}, если записи нет или она устарела
+     */
+    public synchronized String get(String login) {
+        Entry entry = entries.get(login);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAt > 0) {
+            entries.remove(login);
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.passwordHash;
+    }
+
+    /**
+     * Добавляет или заменяет запись.
+     *
+     * @param login        логин пользователя
+     * @param passwordHash хэш пароля, хранящийся в БД
+     */
+    public synchronized void put(String login, String passwordHash) {
+        entries.put(login, new Entry(passwordHash, System.nanoTime() + ttlNanos));
+    }
+
+    /**
+     * Удаляет запись пользователя, например после смены пароля в обход сервера.
+     *
+     * @param login логин пользователя
+     */
+    public synchronized void invalidate(String login) {
+        entries.remove(login);
+    }
+
+    /**
+     * Удаляет все записи.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Возвращает количество записей, вытесненных из-за превышения размера.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Возвращает количество записей, удалённых из-за истечения времени жизни.
+     */
+    public synchronized long getExpirations() {
+        return expirations;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        return "CredentialCache{" +
+                "size=" + entries.size() + "/" + maxSize +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", hitRate=" + (lookups == 0 ? 0 : hits * 100 / lookups) + "%" +
+                ", evictions=" + evictions +
+                ", expirations=" + expirations +
+                '}';
+    }
+
+    private static final class Entry {
+        final String passwordHash;
+        final long expiresAt;
+
+        Entry(String passwordHash, long expiresAt) {
+            this.passwordHash = passwordHash;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -14,6 +14,10 @@ import java.util.Properties;
 /**
  * DataBaseConnector - класс для установления соединения с базой данных через SSH-туннель.
  * Поддерживает работу с PostgresQL на кафедральном сервере se.ifmo.ru
+ * <p>
+ * Соединения для {@link ConnectionPool} открываются методом {@link #openConnection()},
+ * который при необходимости заново поднимает оборвавшийся SSH-туннель.
+ * </p>
  */
 public class DataBaseConnector {
     private static final Logger logger = LogManager.getLogger();
@@ -28,14 +32,20 @@ public class DataBaseConnector {
     private static final int REMOTE_DB_PORT = 5432; // стандартный порт PostgreSQL на сервере
     private static final int LOCAL_FORWARD_PORT = 5432;
 
+    /**
+     * Число выполнений одного {@link java.sql.PreparedStatement}, после которого драйвер PostgreSQL
+     * переходит на именованный подготовленный запрос на сервере.
+     * По умолчанию берется из переменной окружения "DB_PREPARE_THRESHOLD".
+     * Запросы переиспользуются через {@link StatementCache}, поэтому по умолчанию это происходит сразу.
+     */
+    static int prepareThreshold = Integer.parseInt(System.getenv().getOrDefault("DB_PREPARE_THRESHOLD", "1"));
+
     private final String dbUser;
     private final String dbPassword;
     private final String tunnelUser;
     private final String tunnelPassword;
 
     private Session sshSession;
-    private Connection dbConnection;
-    private boolean initialized = false;
 
     /**
      * Конструктор с пользовательскими данными для БД и туннеля.
@@ -53,19 +63,24 @@ public class DataBaseConnector {
     }
 
     /**
-     * Устанавливает SSH-туннель и JDBC-соединение.
+     * Устанавливает SSH-туннель, если он ещё не создан или оборвался.
      *
-     * @return SQL-соединение
      * @throws JSchException если не удалось подключиться по SSH
+     */
+    public synchronized void connect() throws JSchException {
+        setupSshTunnel(tunnelUser, tunnelPassword);
+    }
+
+    /**
+     * Открывает новое JDBC-соединение через SSH-туннель, при необходимости восстанавливая туннель.
+     *
+     * @return новое SQL-соединение
+     * @throws JSchException если не удалось создать SSH-туннель
      * @throws SQLException  если не удалось подключиться к БД
      */
-    public Connection connect() throws JSchException, SQLException {
-        if (!initialized) {
-            setupSshTunnel(tunnelUser, tunnelPassword);
-            setupDatabaseConnection(dbUser, dbPassword);
-            initialized = true;
-        }
-        return dbConnection;
+    public Connection openConnection() throws JSchException, SQLException {
+        connect();
+        return setupDatabaseConnection(dbUser, dbPassword);
     }
 
     /**
@@ -78,6 +93,10 @@ public class DataBaseConnector {
         if (sshSession != null && sshSession.isConnected()) {
             return;
         }
+        if (sshSession != null) {
+            logger.warn("SSH-туннель оборвался, переподключение");
+            sshSession.disconnect();
+        }
 
         JSch jsch = new JSch();
         sshSession = jsch.getSession(tunnelUser, SSH_HOST, SSH_PORT);
@@ -98,42 +117,28 @@ public class DataBaseConnector {
      *
      * @param dbUser     логин от БД
      * @param dbPassword пароль от БД
+     * @return SQL-соединение
      * @throws SQLException если не удалось подключиться к БД
      */
-    private void setupDatabaseConnection(String dbUser, String dbPassword) throws SQLException {
+    private Connection setupDatabaseConnection(String dbUser, String dbPassword) throws SQLException {
         String url = "jdbc:postgresql://localhost:" + LOCAL_FORWARD_PORT + "/" + DB_NAME;
-        dbConnection = DriverManager.getConnection(url, dbUser, dbPassword);
+        Properties properties = new Properties();
+        properties.setProperty("user", dbUser);
+        properties.setProperty("password", dbPassword);
+        properties.setProperty("prepareThreshold", String.valueOf(prepareThreshold));
+        Connection connection = DriverManager.getConnection(url, properties);
         logger.info("Соединение с базой данных установлено: {}", url);
-    }
-
-    /**
-     * Проверяет, закрыто ли соединение, и пытается переподключиться.
-     *
-     * @throws JSchException если не удалось создать SSH-туннель
-     * @throws SQLException если не удалось восстановить соединение с БД
-     */
-    private void tryReconnect() throws JSchException, SQLException {
-        if (dbConnection == null || dbConnection.isClosed()) {
-            setupSshTunnel(tunnelUser, tunnelPassword);
-            setupDatabaseConnection(dbUser, dbPassword);
-        }
+        return connection;
     }
 
 
     /**
-     * Закрывает все активные соединения (SSH и БД).
+     * Закрывает SSH-туннель. Соединения с БД закрывает {@link ConnectionPool}.
      */
     public synchronized void close() {
-        try {
-            if (dbConnection != null && !dbConnection.isClosed()) {
-                dbConnection.close();
-            }
-            if (sshSession != null && sshSession.isConnected()) {
-                sshSession.disconnect();
-            }
-            logger.info("Соединение с базой данных закрыто");
-        } catch (SQLException e) {
-            logger.error("Не удалось корректно закрыть соединение", e);
+        if (sshSession != null && sshSession.isConnected()) {
+            sshSession.disconnect();
         }
+        logger.info("Соединение с базой данных закрыто");
     }
 }
\ No newline at end of file
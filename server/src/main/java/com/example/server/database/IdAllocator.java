@@ -0,0 +1,87 @@
+package com.example.server.database;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * IdAllocator - выдача ID новых элементов до их записи в БД.
+ * <p>
+ * ID берутся из последовательности столбца {@code labworks.id} блоками по {@code blockSize} значений
+ * за одно обращение к БД, поэтому они не пересекаются с ID, которые назначает сама БД.
+ * Зарезервированные, но не выданные ID теряются при перезапуске сервера.
+ * </p>
+ */
+public class IdAllocator {
+    private static final Logger logger = LogManager.getLogger();
+
+    private final ConnectionPool pool;
+    private final int blockSize;
+
+    private int[] reserved = new int[0];
+    private int next;
+
+    /**
+     * @param pool      пул соединений
+     * @param blockSize число ID, резервируемых за одно обращение к БД
+     */
+    public IdAllocator(ConnectionPool pool, int blockSize) {
+        this.pool = pool;
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    /**
+     * Выдаёт один новый ID.
+     *
+     * @throws RuntimeException если ID не удалось зарезервировать
+     */
+    public int next() throws RuntimeException {
+        return next(1)[0];
+    }
+
+    /**
+     * Выдаёт {@code count} новых ID в порядке возрастания.
+     *
+     * @throws RuntimeException если ID не удалось зарезервировать
+     */
+    public synchronized int[] next(int count) throws RuntimeException {
+        int available = reserved.length - next;
+        if (available < count) {
+            int[] block = reserve(Math.max(blockSize, count - available));
+            int[] merged = Arrays.copyOfRange(reserved, next, reserved.length + block.length);
+            System.arraycopy(block, 0, merged, available, block.length);
+            reserved = merged;
+            next = 0;
+        }
+        int[] ids = Arrays.copyOfRange(reserved, next, next + count);
+        next += count;
+        return ids;
+    }
+
+    private int[] reserve(int count) throws RuntimeException {
+        String sql = "SELECT nextval(pg_get_serial_sequence('labworks', 'id')) FROM generate_series(1, ?)";
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement ps = pooled.prepare(sql);
+            ps.setInt(1, count);
+            int[] ids = new int[count];
+            int filled = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next() && filled < count) {
+                    ids[filled++] = rs.getInt(1);
+                }
+            }
+            if (filled != count) {
+                throw new RuntimeException("Reserve ids failed");
+            }
+            Arrays.sort(ids);
+            return ids;
+        } catch (SQLException ex) {
+            logger.error("Не удалось зарезервировать {} ID: {}", count, ex.getMessage());
+            throw new RuntimeException("Reserve ids failed");
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.server.database;
+
+import com.example.server.models.Coordinates;
+import com.example.server.models.Difficulty;
+import com.example.server.models.Discipline;
+import com.example.server.models.LabWork;
+
+/**
+ * LabWorkCsvCodec - преобразование LabWork в строку формата CSV команды COPY и обратно.
+ * <p>
+ * Порядок полей задаётся {@link #COLUMNS} при записи и {@link #LOAD_COLUMNS} при чтении. Текстовые поля
+ * всегда берутся в кавычки, поэтому пустая строка отличается от NULL, который записывается пустым полем
+ * без кавычек. Строки в кавычках могут содержать запятые, кавычки и переводы строк.
+ * </p>
+ */
+final class LabWorkCsvCodec {
+    /**
+     * Столбцы таблицы labworks в порядке полей строки.
+     */
+    static final String COLUMNS = "id, name, x, y, creation_date, minimal_point, tuned_in_works, difficulty, "
+            + "discipline_name, discipline_lecture_hours, discipline_practice_hours, "
+            + "discipline_self_study_hours, discipline_labs_count, owner_login";
+
+    /**
+     * Столбцы при чтении: к {@link #COLUMNS} добавляется версия строки, которую при записи назначает БД.
+     */
+    static final String LOAD_COLUMNS = COLUMNS + ", row_version";
+
+    private static final int COLUMN_COUNT = 15;
+
+    private LabWorkCsvCodec() {
+    }
+
+    /**
+     * Дописывает элемент в конец {@code out} одной строкой CSV, завершённой переводом строки.
+     *
+     * @param labWork    элемент
+     * @param ownerLogin логин владельца, записываемый в строку вместо логина из элемента
+     * @param out        буфер, в который пишется строка
+     */
+    static void encode(LabWork labWork, String ownerLogin, StringBuilder out) {
+        out.append(labWork.getId()).append(',');
+        quote(labWork.getName(), out).append(',');
+        out.append(labWork.getCoordinates().getX()).append(',');
+        out.append(labWork.getCoordinates().getY()).append(',');
+        quote(labWork.getCreationDate(), out).append(',');
+        out.append(labWork.getMinimalPoint()).append(',');
+        out.append(labWork.getTunedInWorks()).append(',');
+        quote(labWork.getDifficulty().name(), out).append(',');
+
+        Discipline discipline = labWork.getDiscipline();
+        if (discipline != null) {
+            quote(discipline.getName(), out).append(',');
+            number(discipline.getLectureHours(), out).append(',');
+            number(discipline.getPracticeHours(), out).append(',');
+            out.append(discipline.getSelfStudyHours()).append(',');
+            number(discipline.getLabsCount(), out).append(',');
+        } else {
+            out.append(",,,,,");
+        }
+
+        quote(ownerLogin, out).append('\n');
+    }
+
+    /**
+     * Разбирает одну строку CSV, полученную из COPY.
+     *
+     * @param row строка в порядке {@link #LOAD_COLUMNS} с завершающим переводом строки или без него
+     * @return элемент с владельцем и версией строки
+     * @throws IllegalArgumentException если строка не соответствует формату
+     */
+    static LabWork decode(String row) {
+        String[] fields = split(row);
+
+        String disciplineName = fields[8];
+        Discipline discipline = null;
+        if (disciplineName != null) {
+            discipline = new Discipline(disciplineName, parseLong(fields[9]), parseLong(fields[10]),
+                    fields[11] == null ? 0 : Long.parseLong(fields[11]),
+                    fields[12] == null ? null : Integer.valueOf(fields[12]));
+        }
+
+        LabWork labWork = new LabWork(
+                Integer.parseInt(fields[0]), fields[1],
+                new Coordinates(Long.parseLong(fields[2]), Integer.parseInt(fields[3])), fields[4],
+                Float.parseFloat(fields[5]), Integer.parseInt(fields[6]), Difficulty.valueOf(fields[7]), discipline
+        );
+        labWork.setOwnerLogin(fields[13]);
+        labWork.setRowVersion(Long.parseLong(fields[14]));
+        return labWork;
+    }
+
+    /**
+     * Делит строку на поля. Пустое поле без кавычек становится {@code null}.
+     */
+    private static String[] split(String row) {
+        String[] fields = new String[COLUMN_COUNT];
+        int length = row.length();
+        while (length > 0 && (row.charAt(length - 1) == '\n' || row.charAt(length - 1) == '\r')) {
+            length--;
+        }
+
+        int field = 0;
+        int pos = 0;
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            if (field == COLUMN_COUNT) {
+                throw new IllegalArgumentException("Too many fields in COPY row: " + row);
+            }
+            if (pos < length && row.charAt(pos) == '"') {
+                value.setLength(0);
+                pos++;
+                while (true) {
+                    if (pos >= length) {
+                        throw new IllegalArgumentException("Unterminated quoted field in COPY row: " + row);
+                    }
+                    char c = row.charAt(pos++);
+                    if (c == '"') {
+                        if (pos < length && row.charAt(pos) == '"') {
+                            value.append('"');
+                            pos++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        value.append(c);
+                    }
+                }
+                fields[field++] = value.toString();
+            } else {
+                int end = row.indexOf(',', pos);
+                if (end < 0 || end > length) {
+                    end = length;
+                }
+                fields[field++] = end == pos ? null : row.substring(pos, end);
+                pos = end;
+            }
+
+            if (pos == length) {
+                break;
+            }
+            if (row.charAt(pos) != ',') {
+                throw new IllegalArgumentException("Unexpected character after field in COPY row: " + row);
+            }
+            pos++;
+        }
+
+        if (field != COLUMN_COUNT) {
+            throw new IllegalArgumentException("Expected " + COLUMN_COUNT + " fields in COPY row, got " + field);
+        }
+        return fields;
+    }
+
+    private static StringBuilder quote(String value, StringBuilder out) {
+        if (value == null) {
+            return out;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        return out.append('"');
+    }
+
+    private static StringBuilder number(Number value, StringBuilder out) {
+        return value == null ? out : out.append(value);
+    }
+
+    private static Long parseLong(String value) {
+        return value == null ? null : Long.valueOf(value);
+    }
+}
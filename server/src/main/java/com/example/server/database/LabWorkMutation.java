@@ -0,0 +1,111 @@
+package com.example.server.database;
+
+import com.example.server.models.LabWork;
+
+import java.util.List;
+
+/**
+ * LabWorkMutation - одно изменение коллекции пользователя, записываемое в БД отдельно от команды клиента.
+ * <p>
+ * Изменение хранит всё, что нужно для его повторного применения: вид, логин владельца, ID или границу ID
+ * и элементы. Повторное применение уже выполненного изменения не меняет результата, если за ним повторно
+ * применяются и все следующие изменения: вставка существующей строки пропускается, остальные изменения
+ * задают значения, а не приращения.
+ * </p>
+ *
+ * @see CollectionDataBaseService#applyMutations(List)
+ */
+public final class LabWorkMutation {
+    /**
+     * Вид изменения.
+     */
+    public enum Kind {
+        /**
+         * Вставка элементов с уже назначенными ID.
+         */
+        INSERT,
+        /**
+         * Замена полей элемента владельца.
+         */
+        UPDATE,
+        /**
+         * Удаление элемента владельца по ID.
+         */
+        DELETE,
+        /**
+         * Удаление элементов владельца с ID меньше границы.
+         */
+        DELETE_LOWER,
+        /**
+         * Удаление всех элементов владельца.
+         */
+        CLEAR
+    }
+
+    private final Kind kind;
+    private final String ownerLogin;
+    private final int id;
+    private final List<LabWork> labWorks;
+
+    private LabWorkMutation(Kind kind, String ownerLogin, int id, List<LabWork> labWorks) {
+        this.kind = kind;
+        this.ownerLogin = ownerLogin;
+        this.id = id;
+        this.labWorks = labWorks;
+    }
+
+    public static LabWorkMutation insert(List<LabWork> labWorks, String ownerLogin) {
+        return new LabWorkMutation(Kind.INSERT, ownerLogin, 0, List.copyOf(labWorks));
+    }
+
+    public static LabWorkMutation update(LabWork labWork, String ownerLogin) {
+        return new LabWorkMutation(Kind.UPDATE, ownerLogin, labWork.getId(), List.of(labWork));
+    }
+
+    public static LabWorkMutation delete(int id, String ownerLogin) {
+        return new LabWorkMutation(Kind.DELETE, ownerLogin, id, List.of());
+    }
+
+    public static LabWorkMutation deleteLower(int id, String ownerLogin) {
+        return new LabWorkMutation(Kind.DELETE_LOWER, ownerLogin, id, List.of());
+    }
+
+    public static LabWorkMutation clear(String ownerLogin) {
+        return new LabWorkMutation(Kind.CLEAR, ownerLogin, 0, List.of());
+    }
+
+    /**
+     * Восстанавливает изменение из сохранённых полей.
+     */
+    public static LabWorkMutation of(Kind kind, String ownerLogin, int id, List<LabWork> labWorks) {
+        return new LabWorkMutation(kind, ownerLogin, id, List.copyOf(labWorks));
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getOwnerLogin() {
+        return ownerLogin;
+    }
+
+    /**
+     * Возвращает ID элемента для {@link Kind#UPDATE} и {@link Kind#DELETE}
+     * или границу ID для {@link Kind#DELETE_LOWER}.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Возвращает элементы для {@link Kind#INSERT} и {@link Kind#UPDATE}.
+     */
+    public List<LabWork> getLabWorks() {
+        return labWorks;
+    }
+
+    @Override
+    public String toString() {
+        return "LabWorkMutation{" + kind + ", owner=" + ownerLogin + ", id=" + id + ", labWorks=" + labWorks.size() + '}';
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.server.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * PooledConnection - соединение, выданное {@link ConnectionPool}.
+ * <p>
+ * Закрытие возвращает соединение в пул, само JDBC-соединение при этом остаётся открытым.
+ * Используется в try-with-resources.
+ * </p>
+ *
+ * <p>Запросы с постоянным текстом SQL нужно получать через {@link #prepare(String)}:
+ * они берутся из кэша этого соединения и не закрываются вызывающим кодом.</p>
+ */
+public class PooledConnection implements AutoCloseable {
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final StatementCache statements;
+    private boolean released;
+
+    PooledConnection(ConnectionPool pool, Connection connection, StatementCache statements) {
+        this.pool = pool;
+        this.connection = connection;
+        this.statements = statements;
+    }
+
+    /**
+     * Возвращает JDBC-соединение. Его нельзя закрывать и использовать после возврата в пул.
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Возвращает подготовленный запрос из кэша соединения, подготавливая его при первом обращении.
+     * Параметры запроса очищены. Запрос нельзя закрывать и использовать после возврата соединения в пул.
+     *
+     * @param sql постоянный текст запроса
+     * @return подготовленный запрос
+     * @throws SQLException если запрос не удалось подготовить
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return statements.prepare(sql);
+    }
+
+    /**
+     * Возвращает соединение в пул. Повторный вызов ничего не делает.
+     */
+    @Override
+    public void close() {
+        if (!released) {
+            released = true;
+            pool.release(connection, statements);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.server.database;
+
+import com.example.server.models.LabWork;
+
+import java.util.Collection;
+
+/**
+ * RowVersionStamp - сводка версий строк таблицы labworks: число строк, наибольшая версия и сумма версий.
+ * <p>
+ * Каждая вставка и каждое изменение строки получают новую версию из последовательности, поэтому совпадение
+ * сводок БД и сохранённой коллекции означает, что с момента сохранения строки не менялись.
+ * Сумма считается по модулю 2<sup>64</sup>.
+ * </p>
+ */
+public final class RowVersionStamp {
+    private final long count;
+    private final long highWaterMark;
+    private final long sum;
+
+    public RowVersionStamp(long count, long highWaterMark, long sum) {
+        this.count = count;
+        this.highWaterMark = highWaterMark;
+        this.sum = sum;
+    }
+
+    /**
+     * Считает сводку по версиям строк элементов коллекции.
+     */
+    public static RowVersionStamp of(Collection<LabWork> labWorks) {
+        long highWaterMark = 0;
+        long sum = 0;
+        for (LabWork labWork : labWorks) {
+            highWaterMark = Math.max(highWaterMark, labWork.getRowVersion());
+            sum += labWork.getRowVersion();
+        }
+        return new RowVersionStamp(labWorks.size(), highWaterMark, sum);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Возвращает наибольшую версию строки.
+     */
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RowVersionStamp that)) return false;
+        return count == that.count && highWaterMark == that.highWaterMark && sum == that.sum;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(count) * 31 * 31 + Long.hashCode(highWaterMark) * 31 + Long.hashCode(sum);
+    }
+
+    @Override
+    public String toString() {
+        return "RowVersionStamp{count=" + count + ", highWaterMark=" + highWaterMark + ", sum=" + sum + '}';
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.server.database;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * StatementCache - кэш подготовленных запросов одного соединения.
+ * <p>
+ * Запросы сервисов - постоянные строки SQL, поэтому {@link PreparedStatement} для каждой строки создаётся
+ * один раз на соединение и затем переиспользуется. Вместе с настройкой {@code prepareThreshold} драйвера
+ * PostgreSQL это позволяет серверу один раз разобрать и спланировать запрос и дальше выполнять готовый план.
+ * При переполнении закрывается запрос, к которому дольше всего не обращались.
+ * </p>
+ *
+ * <p>Кэш принадлежит соединению и используется только тем потоком, которому соединение выдано пулом.
+ * Счётчики общие для всех соединений пула.</p>
+ */
+class StatementCache {
+    private static final Logger logger = LogManager.getLogger();
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    /**
+     * @param connection соединение, для которого готовятся запросы
+     * @param maxSize    максимальное число запросов в кэше
+     * @param hits       общий счётчик попаданий
+     * @param misses     общий счётчик промахов
+     * @param evictions  общий счётчик вытеснений
+     */
+    StatementCache(Connection connection, int maxSize, AtomicLong hits, AtomicLong misses, AtomicLong evictions) {
+        this.connection = connection;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > maxSize) {
+                    evictions.incrementAndGet();
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Возвращает подготовленный запрос для строки SQL с очищенными параметрами.
+     * Запрос принадлежит кэшу, закрывать его нельзя.
+     *
+     * @param sql текст запроса
+     * @return подготовленный запрос
+     * @throws SQLException если запрос не удалось подготовить
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            hits.incrementAndGet();
+            statement.clearParameters();
+            statement.clearBatch();
+            return statement;
+        }
+        misses.incrementAndGet();
+        statement = connection.prepareStatement(sql);
+        statements.put(sql, statement);
+        return statement;
+    }
+
+    /**
+     * Закрывает все запросы кэша.
+     */
+    void close() {
+        for (PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            logger.debug("Ошибка при закрытии запроса: {}", e.getMessage());
+        }
+    }
+}
@@ -4,16 +4,27 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.*;
+import java.time.Duration;
 
 /**
  * UserDataBaseService - класс для работы с пользователями в БД.
+ * <p>
+ * Хэши паролей кэшируются в {@link CredentialCache}, поэтому повторная проверка учётных данных
+ * обычно не обращается к БД. Соединения для запросов берутся из {@link ConnectionPool}.
+ * </p>
  */
 public class UserDataBaseService {
-    private final Connection connection;
+    private final ConnectionPool pool;
+    private final CredentialCache credentialCache;
     private final Logger logger = LogManager.getRootLogger();
 
-    public UserDataBaseService(Connection connection) {
-        this.connection = connection;
+    public UserDataBaseService(ConnectionPool pool) {
+        this(pool, new CredentialCache(10_000, Duration.ofMinutes(5)));
+    }
+
+    public UserDataBaseService(ConnectionPool pool, CredentialCache credentialCache) {
+        this.pool = pool;
+        this.credentialCache = credentialCache;
     }
 
     /**
@@ -29,7 +40,8 @@ public class UserDataBaseService {
             );
         """;
 
-        try (Statement stmt = connection.createStatement()) {
+        try (PooledConnection pooled = pool.borrow();
+             Statement stmt = pooled.getConnection().createStatement()) {
             stmt.execute(sql);
             logger.info("Таблица 'users' создана или уже существует");
         } catch (SQLException ex) {
@@ -39,32 +51,32 @@ public class UserDataBaseService {
     }
 
     /**
-     * Проверяет логин и пароль в БД.
-     *
-     * @param login логин
-     * @param passwordHash хэш пароля
-     * @return true, если данные верны, false в противном случае или при ошибке
-     */
-    /**
-     * Проверяет логин и пароль в БД.
+     * Проверяет логин и пароль: сначала по кэшу, при промахе — в БД.
      *
      * @param login логин
      * @param passwordHash хэш пароля
      * @return true, если данные верны, false в противном случае или при ошибке
      */
     public boolean validateCredentials(String login, String passwordHash) {
+        String cachedHash = credentialCache.get(login);
+        if (cachedHash != null) {
+            return cachedHash.equals(passwordHash);
+        }
+
         String sql = "SELECT password_hash FROM users WHERE login = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement pstmt = pooled.prepare(sql);
             pstmt.setString(1, login);  // Исправлено: был setString(2, login)
-            ResultSet rs = pstmt.executeQuery();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                // Проверяем, есть ли результат
+                if (!rs.next()) {
+                    return false; // Пользователь с таким логином не найден
+                }
 
-            // Проверяем, есть ли результат
-            if (!rs.next()) {
-                return false; // Пользователь с таким логином не найден
+                String storedHash = rs.getString("password_hash");
+                credentialCache.put(login, storedHash);
+                return storedHash.equals(passwordHash);
             }
-
-            String storedHash = rs.getString("password_hash");
-            return storedHash.equals(passwordHash);
         } catch (SQLException e) {
             logger.error("Ошибка проверки учётных данных: {}", e.getMessage());
             return false;
@@ -83,7 +95,8 @@ public class UserDataBaseService {
 
         String sql = "INSERT INTO users (login, password_hash) VALUES (?, ?)";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement pstmt = pooled.prepare(sql);
             pstmt.setString(1, login);
             pstmt.setString(2, passwordHash);
 
@@ -91,6 +104,7 @@ public class UserDataBaseService {
             if (rows == 0) {
                 throw new RuntimeException("Register user failed");
             }
+            credentialCache.put(login, passwordHash);
 
         } catch (SQLException e) {
             final String uniqueViolation = "23505";
@@ -103,4 +117,28 @@ public class UserDataBaseService {
             }
         }
     }
+
+    /**
+     * Удаляет учётные данные пользователя из кэша.
+     * <p>Нужно вызывать, если пароль пользователя изменён в БД в обход этого сервиса.</p>
+     *
+     * @param login логин пользователя
+     */
+    public void invalidateCredentials(String login) {
+        credentialCache.invalidate(login);
+    }
+
+    /**
+     * Полностью очищает кэш учётных данных.
+     */
+    public void invalidateAllCredentials() {
+        credentialCache.invalidateAll();
+    }
+
+    /**
+     * Возвращает кэш учётных данных (для просмотра счётчиков попаданий, промахов и вытеснений).
+     */
+    public CredentialCache getCredentialCache() {
+        return credentialCache;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,202 @@
+package com.example.server.database;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WriteCoordinator - групповая фиксация изменений коллекции, поступающих одновременно от разных клиентов.
+ * <p>
+ * Изменения ставятся в очередь, поток {@code write-coordinator} забирает первое из них и ждёт следующие
+ * не дольше окна {@code window} или пока их не наберётся {@code maxBatch}. Собранная группа выполняется
+ * одной транзакцией ({@link CollectionDataBaseService#executeGroup(List)}): изменения одного вида
+ * отправляются одной пачкой запросов, поэтому группа стоит одной фиксации и нескольких обращений к БД
+ * вместо фиксации и обращения на каждое изменение. Пока группа выполняется, в очереди копятся
+ * изменения следующей, так что даже при нулевом окне группы растут вместе с нагрузкой.
+ * </p>
+ *
+ * <p>Каждый вызывающий получает свой результат - ID затронутых изменением строк. Изменение, нарушающее
+ * ограничения таблицы, завершается ошибкой только у своего вызывающего. Если не удалась вся транзакция,
+ * ошибку получают все изменения группы.</p>
+ */
+public class WriteCoordinator implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger();
+
+    private final CollectionDataBaseService dataBaseService;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    /**
+     * Блокировка, под которой изменение ставится в очередь и координатор останавливается: после остановки
+     * в очередь ничего не добавляется, поэтому {@link #close()} завершает все изменения.
+     */
+    private final Object lifecycleLock = new Object();
+    private volatile boolean running = true;
+
+    private final AtomicLong groups = new AtomicLong();
+    private final AtomicLong mutations = new AtomicLong();
+    private final AtomicLong failedGroups = new AtomicLong();
+
+    /**
+     * @param dataBaseService сервис коллекции в БД
+     * @param window          наибольшее время ожидания следующих изменений после первого изменения группы
+     * @param maxBatch        наибольшее число изменений в группе
+     */
+    public WriteCoordinator(CollectionDataBaseService dataBaseService, Duration window, int maxBatch) {
+        this.dataBaseService = dataBaseService;
+        this.windowNanos = window.toNanos();
+        this.maxBatch = Math.max(1, maxBatch);
+        this.thread = new Thread(this::run, "write-coordinator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Ставит изменение в очередь групповой фиксации.
+     *
+     * @param mutation изменение
+     * @return ID строк, затронутых изменением, в порядке возрастания
+     */
+    public CompletableFuture<List<Integer>> submit(LabWorkMutation mutation) {
+        Pending pending = new Pending(mutation);
+        synchronized (lifecycleLock) {
+            if (running) {
+                queue.add(pending);
+                return pending.future;
+            }
+        }
+        pending.future.completeExceptionally(new IllegalStateException("Write coordinator is closed"));
+        return pending.future;
+    }
+
+    /**
+     * Выполняет изменение в ближайшей группе и ждёт её фиксации.
+     *
+     * @param mutation изменение
+     * @return ID строк, затронутых изменением, в порядке возрастания
+     * @throws RuntimeException если изменение не выполнено
+     */
+    public List<Integer> execute(LabWorkMutation mutation) throws RuntimeException {
+        try {
+            return submit(mutation).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * Выполняет изменения, уже стоящие в очереди, и останавливает поток фиксации.
+     */
+    @Override
+    public void close() {
+        synchronized (lifecycleLock) {
+            running = false;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // изменения, поставленные в очередь после последней группы потока фиксации
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.completeExceptionally(new IllegalStateException("Write coordinator is closed"));
+        }
+    }
+
+    private void run() {
+        List<Pending> group = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                queue.drainTo(group, maxBatch - group.size());
+                while (group.size() < maxBatch) {
+                    Pending next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                    queue.drainTo(group, maxBatch - group.size());
+                }
+            } catch (InterruptedException e) {
+                // собранная группа всё равно выполняется
+            }
+            if (!group.isEmpty()) {
+                execute(group);
+                group.clear();
+            }
+        }
+    }
+
+    private void execute(List<Pending> group) {
+        List<LabWorkMutation> batch = new ArrayList<>(group.size());
+        for (Pending pending : group) {
+            batch.add(pending.mutation);
+        }
+        groups.incrementAndGet();
+        mutations.addAndGet(group.size());
+        try {
+            List<List<Integer>> results = dataBaseService.executeGroup(batch);
+            for (int i = 0; i < group.size(); i++) {
+                List<Integer> result = results.get(i);
+                if (result == null) {
+                    group.get(i).future.completeExceptionally(new RuntimeException("Mutation rejected by the database"));
+                } else {
+                    group.get(i).future.complete(result);
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            failedGroups.incrementAndGet();
+            logger.error("Не удалось выполнить группу из {} изменений: {}", group.size(), e.getMessage());
+            RuntimeException failure = new RuntimeException("Group commit failed");
+            for (Pending pending : group) {
+                pending.future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * Возвращает среднее число изменений в группе.
+     */
+    public double getAverageGroupSize() {
+        long count = groups.get();
+        return count == 0 ? 0 : (double) mutations.get() / count;
+    }
+
+    @Override
+    public String toString() {
+        return "WriteCoordinator{" +
+                "windowMs=" + String.format("%.3f", windowNanos / 1_000_000.0) +
+                ", maxBatch=" + maxBatch +
+                ", groups=" + groups.get() +
+                ", mutations=" + mutations.get() +
+                ", avgGroupSize=" + String.format("%.2f", getAverageGroupSize()) +
+                ", failedGroups=" + failedGroups.get() +
+                '}';
+    }
+
+    private static final class Pending {
+        private final LabWorkMutation mutation;
+        private final CompletableFuture<List<Integer>> future = new CompletableFuture<>();
+
+        private Pending(LabWorkMutation mutation) {
+            this.mutation = mutation;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.server.models;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 
@@ -19,8 +20,25 @@ import java.util.List;
 })
 public class Command {
     public String name;
+
+    /**
+     * Простые аргументы команды: строки и числа.
+     */
     public List<Object> arguments;
 
+    /**
+     * Элементы и дисциплины, передаваемые командой, или {@code null}, если команде они не нужны.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Payload payload;
+
+    /**
+     * Идентификатор запроса, назначаемый клиентом.
+     * <p>Сервер возвращает его в {@link Response#requestId}, что позволяет отправлять
+     * несколько команд подряд, не дожидаясь ответов.</p>
+     */
+    public long requestId;
+
     public Command() {
     }
 
@@ -28,4 +46,18 @@ public class Command {
         this.name = command;
         this.arguments = arguments;
     }
+
+    /**
+     * Возвращает данные команды ожидаемого типа.
+     *
+     * @param type ожидаемый тип данных
+     * @return данные команды
+     * @throws IllegalArgumentException если данных нет или они другого типа
+     */
+    public <T extends Payload> T payload(Class<T> type) {
+        if (!type.isInstance(payload)) {
+            throw new IllegalArgumentException("Expected " + type.getSimpleName() + " in command " + name);
+        }
+        return type.cast(payload);
+    }
 }
@@ -0,0 +1,15 @@
+package com.example.server.models;
+
+/**
+ * Данные команды {@code count_less_than_discipline}: дисциплина для сравнения.
+ */
+public class DisciplinePayload extends Payload {
+    public Discipline discipline;
+
+    public DisciplinePayload() {
+    }
+
+    public DisciplinePayload(Discipline discipline) {
+        this.discipline = discipline;
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.server.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.util.Objects;
@@ -19,6 +21,7 @@ public class LabWork implements Comparable<LabWork>, Serializable {
     private Difficulty difficulty;
     private Discipline discipline;
     private String ownerLogin;
+    private long rowVersion;
 
     public LabWork() {
     }
@@ -233,4 +236,20 @@ public class LabWork implements Comparable<LabWork>, Serializable {
     public void setOwnerLogin(String login) {
         this.ownerLogin = login;
     }
+
+    /**
+     * Возвращает версию строки в БД, полученную при последней записи или чтении элемента.
+     * Версия не передаётся клиенту и не участвует в сравнении элементов.
+     *
+     * @return версия строки или 0, если она неизвестна
+     */
+    @JsonIgnore
+    public long getRowVersion() {
+        return rowVersion;
+    }
+
+    @JsonIgnore
+    public void setRowVersion(long rowVersion) {
+        this.rowVersion = rowVersion;
+    }
 }
\ No newline at end of file
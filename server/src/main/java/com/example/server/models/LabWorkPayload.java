@@ -0,0 +1,15 @@
+package com.example.server.models;
+
+/**
+ * Данные команды {@code add}: добавляемый элемент.
+ */
+public class LabWorkPayload extends Payload {
+    public LabWork labWork;
+
+    public LabWorkPayload() {
+    }
+
+    public LabWorkPayload(LabWork labWork) {
+        this.labWork = labWork;
+    }
+}
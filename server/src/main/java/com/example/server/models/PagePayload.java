@@ -0,0 +1,28 @@
+package com.example.server.models;
+
+/**
+ * Данные постраничного чтения для команд {@code show}, {@code show_owner} и {@code filter_by_size}.
+ * <p>
+ * Страница - не более {@link #limit} элементов с ID больше, чем у последнего элемента предыдущей
+ * страницы. Курсор {@link #after} берётся из {@link Response#nextCursor} предыдущей страницы.
+ * </p>
+ */
+public class PagePayload extends Payload {
+    /**
+     * Наибольшее число элементов на странице; не больше нуля - без ограничения.
+     */
+    public int limit;
+
+    /**
+     * Курсор, после которого начинается страница, или {@code null} для первой страницы.
+     */
+    public String after;
+
+    public PagePayload() {
+    }
+
+    public PagePayload(int limit, String after) {
+        this.limit = limit;
+        this.after = after;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.server.models;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+/**
+ * Базовый класс типизированных данных команды.
+ * <p>
+ * Элементы и дисциплины передаются в {@link Command#payload} вложенными объектами JSON с полем
+ * {@code type}, по которому выбирается подкласс, и разбираются вместе со всей командой за один проход.
+ * </p>
+ *
+ * @see LabWorkPayload
+ * @see LabWorkListPayload
+ * @see UpdatePayload
+ * @see DisciplinePayload
+ * @see PagePayload
+ */
+@JsonTypeInfo(
+        use = JsonTypeInfo.Id.NAME,
+        include = JsonTypeInfo.As.PROPERTY,
+        property = "type"
+)
+@JsonSubTypes({
+        @JsonSubTypes.Type(value = LabWorkPayload.class, name = "labWork"),
+        @JsonSubTypes.Type(value = LabWorkListPayload.class, name = "labWorkList"),
+        @JsonSubTypes.Type(value = UpdatePayload.class, name = "update"),
+        @JsonSubTypes.Type(value = DisciplinePayload.class, name = "discipline"),
+        @JsonSubTypes.Type(value = PagePayload.class, name = "page")
+})
+public abstract class Payload {
+}
@@ -0,0 +1,17 @@
+package com.example.server.models;
+
+/**
+ * Данные команды {@code update}: ID заменяемого элемента и его новые значения.
+ */
+public class UpdatePayload extends Payload {
+    public int id;
+    public LabWork labWork;
+
+    public UpdatePayload() {
+    }
+
+    public UpdatePayload(int id, LabWork labWork) {
+        this.id = id;
+        this.labWork = labWork;
+    }
+}
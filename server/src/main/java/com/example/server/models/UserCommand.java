@@ -24,10 +24,15 @@ public class UserCommand extends Command {
 
     /**
      * Объект пользователя, который ассоциирован с данной командой.
-     * <p>Может использоваться для проверки прав, аутентификации или передачи контекста выполнения.</p>
+     * <p>Если команда пришла с токеном сессии, сервер заполняет это поле сам по результату проверки токена.</p>
      */
     public User user;
 
+    /**
+     * Токен сессии, полученный клиентом при входе.
+     */
+    public String token;
+
     /**
      * Конструктор по умолчанию.
      * <p>Используется, например, фреймворками сериализации (например, Jackson).</p>
@@ -0,0 +1,351 @@
+package com.example.server.protocol;
+
+import com.example.server.models.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Двоичный кодек: поля команд, ответов и элементов записываются подряд без имён.
+ * <p>
+ * Числа записываются в big-endian фиксированной длины, строки - длиной (4 байта, -1 для {@code null})
+ * и байтами UTF-8, необязательные объекты - признаком наличия (1 байт). Команда начинается с вида
+ * (0 - {@link Command}, 1 - {@link UserCommand}), её данные - с вида {@link Payload}
+ * (0 - нет данных). Аргументы команды записываются с типом (строка, целое, длинное целое,
+ * вещественное, логическое). Курсор следующей страницы записывается в конце ответа
+ * только при наличии, поэтому ответы без него не отличаются от ответов прежних версий.
+ * </p>
+ *
+ * <p>Передаются только корректные элементы: незаполненные обязательные поля элемента
+ * не имеют двоичного представления.</p>
+ */
+public class BinaryCodec implements MessageCodec {
+    public static final String NAME = "binary";
+
+    /**
+     * Примерный размер элемента, чтобы буфер команды со списком элементов не рос по ходу записи.
+     */
+    private static final int ESTIMATED_LAB_WORK_SIZE = 160;
+
+    private static final byte COMMAND = 0;
+    private static final byte USER_COMMAND = 1;
+
+    private static final byte NO_PAYLOAD = 0;
+    private static final byte LAB_WORK = 1;
+    private static final byte LAB_WORK_LIST = 2;
+    private static final byte UPDATE = 3;
+    private static final byte DISCIPLINE = 4;
+    private static final byte PAGE = 5;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte BOOLEAN = 5;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encodeCommand(Command command) throws IOException {
+        int labWorks = command.payload instanceof LabWorkListPayload list ? list.labWorks.size() : 1;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + ESTIMATED_LAB_WORK_SIZE * labWorks);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(command instanceof UserCommand ? USER_COMMAND : COMMAND);
+        writeString(out, command.name);
+        out.writeLong(command.requestId);
+        writeArguments(out, command.arguments);
+        writePayload(out, command.payload);
+        if (command instanceof UserCommand userCommand) {
+            User user = userCommand.user;
+            out.writeBoolean(user != null);
+            if (user != null) {
+                writeString(out, user.username);
+                writeString(out, user.pass);
+            }
+            writeString(out, userCommand.token);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Command decodeCommand(byte[] payload) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        try {
+            byte kind = in.get();
+            Command command = switch (kind) {
+                case COMMAND -> new Command();
+                case USER_COMMAND -> new UserCommand();
+                default -> throw new ProtocolException("Unknown command kind: " + kind);
+            };
+            command.name = readString(in);
+            command.requestId = in.getLong();
+            command.arguments = readArguments(in);
+            command.payload = readPayload(in);
+            if (command instanceof UserCommand userCommand) {
+                if (in.get() != 0) {
+                    userCommand.user = new User(readString(in), readString(in));
+                }
+                userCommand.token = readString(in);
+            }
+            checkConsumed(in);
+            return command;
+        } catch (BufferUnderflowException e) {
+            throw new ProtocolException("Truncated binary command");
+        } catch (RuntimeException e) {
+            throw new ProtocolException("Malformed binary command: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public byte[] encodeResponse(Response response) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                64 + (response.data == null ? 0 : response.data.length() * 2));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(response.requestId);
+        writeString(out, response.data);
+        writeString(out, response.token);
+        if (response.nextCursor != null) {
+            writeString(out, response.nextCursor);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Response decodeResponse(byte[] payload) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        try {
+            Response response = new Response();
+            response.requestId = in.getLong();
+            response.data = readString(in);
+            response.token = readString(in);
+            if (in.hasRemaining()) {
+                response.nextCursor = readString(in);
+            }
+            checkConsumed(in);
+            return response;
+        } catch (BufferUnderflowException e) {
+            throw new ProtocolException("Truncated binary response");
+        }
+    }
+
+    @Override
+    public String describe(byte[] payload) {
+        return "<" + NAME + ", " + payload.length + " bytes>";
+    }
+
+    private static void writeArguments(DataOutputStream out, List<Object> arguments) throws IOException {
+        if (arguments == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(arguments.size());
+        for (Object argument : arguments) {
+            if (argument == null) {
+                out.writeByte(NULL);
+            } else if (argument instanceof String value) {
+                out.writeByte(STRING);
+                writeString(out, value);
+            } else if (argument instanceof Integer || argument instanceof Short || argument instanceof Byte) {
+                out.writeByte(INT);
+                out.writeInt(((Number) argument).intValue());
+            } else if (argument instanceof Long value) {
+                out.writeByte(LONG);
+                out.writeLong(value);
+            } else if (argument instanceof Double || argument instanceof Float) {
+                out.writeByte(DOUBLE);
+                out.writeDouble(((Number) argument).doubleValue());
+            } else if (argument instanceof Boolean value) {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean(value);
+            } else {
+                throw new IllegalArgumentException("Unsupported argument type: " + argument.getClass().getName());
+            }
+        }
+    }
+
+    private static List<Object> readArguments(ByteBuffer in) throws ProtocolException {
+        int count = in.getInt();
+        if (count < 0) {
+            return null;
+        }
+        checkCount(in, count);
+        List<Object> arguments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte type = in.get();
+            arguments.add(switch (type) {
+                case NULL -> null;
+                case STRING -> readString(in);
+                case INT -> in.getInt();
+                case LONG -> in.getLong();
+                case DOUBLE -> in.getDouble();
+                case BOOLEAN -> in.get() != 0;
+                default -> throw new ProtocolException("Unknown argument type: " + type);
+            });
+        }
+        return arguments;
+    }
+
+    private static void writePayload(DataOutputStream out, Payload payload) throws IOException {
+        if (payload == null) {
+            out.writeByte(NO_PAYLOAD);
+        } else if (payload instanceof LabWorkPayload labWorkPayload) {
+            out.writeByte(LAB_WORK);
+            writeLabWork(out, labWorkPayload.labWork);
+        } else if (payload instanceof LabWorkListPayload listPayload) {
+            out.writeByte(LAB_WORK_LIST);
+            out.writeInt(listPayload.labWorks.size());
+            for (LabWork labWork : listPayload.labWorks) {
+                writeLabWork(out, labWork);
+            }
+        } else if (payload instanceof UpdatePayload updatePayload) {
+            out.writeByte(UPDATE);
+            out.writeInt(updatePayload.id);
+            writeLabWork(out, updatePayload.labWork);
+        } else if (payload instanceof DisciplinePayload disciplinePayload) {
+            out.writeByte(DISCIPLINE);
+            writeDiscipline(out, disciplinePayload.discipline);
+        } else if (payload instanceof PagePayload pagePayload) {
+            out.writeByte(PAGE);
+            out.writeInt(pagePayload.limit);
+            writeString(out, pagePayload.after);
+        } else {
+            throw new IllegalArgumentException("Unsupported payload: " + payload.getClass().getName());
+        }
+    }
+
+    private static Payload readPayload(ByteBuffer in) throws ProtocolException {
+        byte type = in.get();
+        switch (type) {
+            case NO_PAYLOAD:
+                return null;
+            case LAB_WORK:
+                return new LabWorkPayload(readLabWork(in));
+            case LAB_WORK_LIST:
+                int count = in.getInt();
+                checkCount(in, count);
+                List<LabWork> labWorks = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    labWorks.add(readLabWork(in));
+                }
+                return new LabWorkListPayload(labWorks);
+            case UPDATE:
+                int id = in.getInt();
+                return new UpdatePayload(id, readLabWork(in));
+            case DISCIPLINE:
+                return new DisciplinePayload(readDiscipline(in));
+            case PAGE:
+                int limit = in.getInt();
+                return new PagePayload(limit, readString(in));
+            default:
+                throw new ProtocolException("Unknown payload type: " + type);
+        }
+    }
+
+    private static void writeLabWork(DataOutputStream out, LabWork labWork) throws IOException {
+        out.writeBoolean(labWork != null);
+        if (labWork == null) {
+            return;
+        }
+        if (!labWork.validate()) {
+            throw new IllegalArgumentException("Invalid LabWork cannot be encoded: " + labWork.getName());
+        }
+        out.writeInt(labWork.getId());
+        writeString(out, labWork.getName());
+        out.writeLong(labWork.getCoordinates().getX());
+        out.writeInt(labWork.getCoordinates().getY());
+        writeString(out, labWork.getCreationDate());
+        out.writeFloat(labWork.getMinimalPoint());
+        out.writeInt(labWork.getTunedInWorks());
+        out.writeByte(labWork.getDifficulty().ordinal());
+        writeDiscipline(out, labWork.getDiscipline());
+        writeString(out, labWork.getOwnerLogin());
+    }
+
+    private static LabWork readLabWork(ByteBuffer in) {
+        if (in.get() == 0) {
+            return null;
+        }
+        int id = in.getInt();
+        String name = readString(in);
+        Coordinates coordinates = new Coordinates(in.getLong(), in.getInt());
+        String creationDate = readString(in);
+        float minimalPoint = in.getFloat();
+        int tunedInWorks = in.getInt();
+        Difficulty difficulty = Difficulty.values()[in.get()];
+        Discipline discipline = readDiscipline(in);
+        return new LabWork(id, name, coordinates, creationDate, minimalPoint, tunedInWorks, difficulty,
+                discipline, readString(in));
+    }
+
+    private static void writeDiscipline(DataOutputStream out, Discipline discipline) throws IOException {
+        out.writeBoolean(discipline != null);
+        if (discipline == null) {
+            return;
+        }
+        if (!discipline.validate()) {
+            throw new IllegalArgumentException("Invalid Discipline cannot be encoded: " + discipline.getName());
+        }
+        writeString(out, discipline.getName());
+        out.writeLong(discipline.getLectureHours());
+        out.writeLong(discipline.getPracticeHours());
+        out.writeLong(discipline.getSelfStudyHours());
+        out.writeInt(discipline.getLabsCount());
+    }
+
+    private static Discipline readDiscipline(ByteBuffer in) {
+        if (in.get() == 0) {
+            return null;
+        }
+        return new Discipline(readString(in), in.getLong(), in.getLong(), in.getLong(), in.getInt());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    /**
+     * Отсекает заведомо невозможное число элементов до выделения списка под них.
+     */
+    private static void checkCount(ByteBuffer in, int count) {
+        if (count > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+    }
+
+    private static void checkConsumed(ByteBuffer in) throws ProtocolException {
+        if (in.hasRemaining()) {
+            throw new ProtocolException("Unexpected " + in.remaining() + " bytes after message");
+        }
+    }
+}
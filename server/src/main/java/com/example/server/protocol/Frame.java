@@ -0,0 +1,114 @@
+package com.example.server.protocol;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Кадр протокола обмена между клиентом и сервером.
+ * <p>
+ * Формат кадра: версия протокола (1 байт), тип кадра (1 байт), длина полезной нагрузки
+ * (4 байта, big-endian) и сама полезная нагрузка. Читающая сторона заранее знает размер
+ * сообщения и может прочитать его целиком, не разбирая поток построчно.
+ * </p>
+ *
+ * @see FrameType
+ * @see FrameDecoder
+ */
+public class Frame {
+    /**
+     * Текущая версия формата кадров.
+     */
+    public static final byte VERSION = 1;
+
+    /**
+     * Размер заголовка кадра в байтах.
+     */
+    public static final int HEADER_SIZE = 6;
+
+    /**
+     * Максимальный допустимый размер полезной нагрузки.
+     */
+    public static final int MAX_PAYLOAD_SIZE = 16 * 1024 * 1024;
+
+    private final FrameType type;
+    private final byte[] payload;
+
+    public Frame(FrameType type, byte[] payload) {
+        this.type = type;
+        this.payload = payload;
+    }
+
+    public FrameType getType() {
+        return type;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * Кодирует кадр вместе с заголовком в один массив.
+     *
+     * @return байты кадра, готовые к отправке
+     */
+    public byte[] encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        buffer.put(VERSION).put(type.code()).putInt(payload.length).put(payload);
+        return buffer.array();
+    }
+
+    /**
+     * Записывает кадр в поток. Поток не сбрасывается.
+     *
+     * @param out поток вывода
+     * @throws IOException если запись не удалась
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeByte(VERSION);
+        out.writeByte(type.code());
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    /**
+     * Читает один кадр из потока.
+     *
+     * @param in поток ввода
+     * @return прочитанный кадр или {@code null}, если поток закончился до начала кадра
+     * @throws ProtocolException если заголовок кадра некорректен
+     * @throws IOException если поток оборвался посреди кадра или чтение не удалось
+     */
+    public static Frame read(DataInputStream in) throws IOException {
+        int version = in.read();
+        if (version < 0) {
+            return null;
+        }
+        checkVersion((byte) version);
+        FrameType type = FrameType.fromCode(in.readByte());
+        int length = in.readInt();
+        checkLength(length);
+
+        byte[] payload = new byte[length];
+        try {
+            in.readFully(payload);
+        } catch (EOFException e) {
+            throw new EOFException("Connection closed in the middle of a frame");
+        }
+        return new Frame(type, payload);
+    }
+
+    static void checkVersion(byte version) throws ProtocolException {
+        if (version != VERSION) {
+            throw new ProtocolException("Unsupported frame version: " + version);
+        }
+    }
+
+    static void checkLength(int length) throws ProtocolException {
+        if (length < 0 || length > MAX_PAYLOAD_SIZE) {
+            throw new ProtocolException("Invalid frame length: " + length);
+        }
+    }
+}
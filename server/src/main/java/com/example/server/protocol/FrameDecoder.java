@@ -0,0 +1,59 @@
+package com.example.server.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Инкрементальный декодер кадров для неблокирующего чтения.
+ * <p>
+ * Принимает данные произвольными порциями и отдаёт только целиком собранные кадры.
+ * Экземпляр не потокобезопасен и должен использоваться одним потоком ввода-вывода.
+ * </p>
+ *
+ * @see Frame
+ */
+public class FrameDecoder {
+    private final ByteBuffer header = ByteBuffer.allocate(Frame.HEADER_SIZE);
+    private FrameType type;
+    private byte[] payload;
+    private int filled;
+
+    /**
+     * Разбирает все доступные байты буфера.
+     *
+     * @param buffer буфер в режиме чтения
+     * @param frames получатель собранных кадров
+     * @throws ProtocolException если заголовок кадра некорректен
+     */
+    public void decode(ByteBuffer buffer, Consumer<Frame> frames) throws ProtocolException {
+        while (payload != null || buffer.hasRemaining()) {
+            if (payload == null) {
+                while (header.hasRemaining() && buffer.hasRemaining()) {
+                    header.put(buffer.get());
+                }
+                if (header.hasRemaining()) {
+                    return;
+                }
+                header.flip();
+                Frame.checkVersion(header.get());
+                type = FrameType.fromCode(header.get());
+                int length = header.getInt();
+                Frame.checkLength(length);
+                header.clear();
+                payload = new byte[length];
+                filled = 0;
+            }
+
+            int chunk = Math.min(buffer.remaining(), payload.length - filled);
+            buffer.get(payload, filled, chunk);
+            filled += chunk;
+
+            if (filled < payload.length) {
+                return;
+            }
+            frames.accept(new Frame(type, payload));
+            payload = null;
+            type = null;
+        }
+    }
+}
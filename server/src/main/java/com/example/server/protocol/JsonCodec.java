@@ -0,0 +1,47 @@
+package com.example.server.protocol;
+
+import com.example.server.models.Command;
+import com.example.server.models.Response;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Кодек JSON: команды и ответы сериализуются Jackson в UTF-8.
+ */
+public class JsonCodec implements MessageCodec {
+    public static final String NAME = "json";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encodeCommand(Command command) throws IOException {
+        return objectMapper.writeValueAsBytes(command);
+    }
+
+    @Override
+    public Command decodeCommand(byte[] payload) throws IOException {
+        return objectMapper.readValue(payload, Command.class);
+    }
+
+    @Override
+    public byte[] encodeResponse(Response response) throws IOException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Override
+    public Response decodeResponse(byte[] payload) throws IOException {
+        return objectMapper.readValue(payload, Response.class);
+    }
+
+    @Override
+    public String describe(byte[] payload) {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.server.protocol;
+
+import com.example.server.models.Command;
+import com.example.server.models.Response;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Представление команд и ответов в полезной нагрузке кадров.
+ * <p>
+ * Кодек выбирается для каждого подключения кадрами {@link FrameType#HELLO}: клиент перечисляет
+ * поддерживаемые кодеки в порядке предпочтения, сервер отвечает именем выбранного.
+ * Подключение без согласования использует {@link #JSON}.
+ * </p>
+ *
+ * @see JsonCodec
+ * @see BinaryCodec
+ */
+public interface MessageCodec {
+    /**
+     * Кодек по умолчанию, понятный любой версии клиента и сервера.
+     */
+    MessageCodec JSON = new JsonCodec();
+
+    /**
+     * Компактный двоичный кодек.
+     */
+    MessageCodec BINARY = new BinaryCodec();
+
+    /**
+     * Возвращает имя кодека, передаваемое в {@link FrameType#HELLO}.
+     */
+    String name();
+
+    byte[] encodeCommand(Command command) throws IOException;
+
+    Command decodeCommand(byte[] payload) throws IOException;
+
+    byte[] encodeResponse(Response response) throws IOException;
+
+    Response decodeResponse(byte[] payload) throws IOException;
+
+    /**
+     * Возвращает полезную нагрузку в виде, пригодном для журнала.
+     */
+    String describe(byte[] payload);
+
+    /**
+     * Находит кодек по имени.
+     *
+     * @param name имя кодека
+     * @return кодек
+     * @throws ProtocolException если кодек неизвестен
+     */
+    static MessageCodec forName(String name) throws ProtocolException {
+        for (MessageCodec codec : new MessageCodec[]{JSON, BINARY}) {
+            if (codec.name().equals(name)) {
+                return codec;
+            }
+        }
+        throw new ProtocolException("Unknown codec: " + name);
+    }
+
+    /**
+     * Выбирает первый из предложенных клиентом кодеков, разрешённый на сервере.
+     *
+     * @param offer   имена кодеков клиента через запятую в порядке предпочтения
+     * @param enabled имена кодеков, разрешённых на сервере
+     * @return выбранный кодек или {@link #JSON}, если общих кодеков нет
+     */
+    static MessageCodec choose(String offer, Collection<String> enabled) {
+        for (String name : offer.split(",")) {
+            name = name.trim();
+            if (!enabled.contains(name)) {
+                continue;
+            }
+            try {
+                return forName(name);
+            } catch (ProtocolException e) {
+                // кодек разрешён в настройках, но не реализован
+            }
+        }
+        return JSON;
+    }
+}